@@ -13,6 +13,124 @@ repositories {
 
 dependencies {
     implementation("com.google.code.gson:gson:2.10.1")
+
+    testImplementation("junit:junit:4.13.2")
+}
+
+// Content hashes of the bundled proxy runtime (read by ProxyRuntimeExtractor)
+val proxyResourcesDir = file("src/main/resources/proxy")
+val proxyManifestDir = layout.buildDirectory.dir("generated/proxy-manifest")
+
+val generateProxyManifest by tasks.registering {
+    description = "Writes proxy/manifest.json with SHA-256 hashes of the proxy runtime files"
+    inputs.dir(proxyResourcesDir)
+    outputs.dir(proxyManifestDir)
+
+    doLast {
+        val files = sortedMapOf<String, Map<String, Any>>()
+        proxyResourcesDir.walkTopDown()
+            .onEnter { it.name != "node_modules" }
+            .filter { it.isFile && it.name != ".env" && it.name != "manifest.json" }
+            .forEach { file ->
+                val digest = java.security.MessageDigest.getInstance("SHA-256")
+                    .digest(file.readBytes())
+                files[file.relativeTo(proxyResourcesDir).invariantSeparatorsPath] = mapOf(
+                    "sha256" to digest.joinToString("") { "%02x".format(it) },
+                    "size" to file.length(),
+                )
+            }
+
+        val manifest = proxyManifestDir.get().file("proxy/manifest.json").asFile
+        manifest.parentFile.mkdirs()
+        manifest.writeText(
+            groovy.json.JsonOutput.prettyPrint(groovy.json.JsonOutput.toJson(mapOf("files" to files)))
+        )
+    }
+}
+
+// Prebuilt node_modules shipped with the plugin (read by ProxyDependencyBundle).
+// Installed with `npm ci` from the committed package-lock.json, so every
+// build bundles the same transitive versions. Needs npm and network at build
+// time (see BUILD.md). Skipped with -PskipProxyBundle or when there is no
+// lockfile to pin against, in which case the plugin falls back to
+// `npm install`.
+val proxyDepsWorkDir = layout.buildDirectory.dir("proxy-deps")
+val proxyBundleDir = layout.buildDirectory.dir("generated/proxy-bundle")
+val proxyLockfile = proxyResourcesDir.resolve("package-lock.json")
+val skipProxyBundle = project.hasProperty("skipProxyBundle") || !proxyLockfile.exists()
+if (!project.hasProperty("skipProxyBundle") && !proxyLockfile.exists()) {
+    logger.warn(
+        "src/main/resources/proxy/package-lock.json is missing; building without bundled " +
+            "proxy dependencies (run `npm install --package-lock-only` there and commit it)"
+    )
+}
+
+val installProxyDependencies by tasks.registering(Exec::class) {
+    description = "Resolves the proxy's pinned npm dependencies"
+    onlyIf { !skipProxyBundle }
+    inputs.files(proxyResourcesDir.resolve("package.json"), proxyLockfile)
+    outputs.dir(proxyDepsWorkDir.map { it.dir("node_modules") })
+
+    val workDir = proxyDepsWorkDir.get().asFile
+    workingDir(workDir)
+    val npm = if (System.getProperty("os.name").startsWith("Windows")) "npm.cmd" else "npm"
+
+    doFirst {
+        workDir.mkdirs()
+        copy {
+            from(proxyResourcesDir) { include("package.json", "package-lock.json") }
+            into(workDir)
+        }
+        commandLine(npm, "ci", "--omit=dev", "--no-audit", "--no-fund")
+    }
+}
+
+val bundleProxyDependencies by tasks.registering(Zip::class) {
+    description = "Packs the resolved node_modules into proxy/node_modules.zip"
+    dependsOn(installProxyDependencies)
+    onlyIf { !skipProxyBundle }
+
+    from(proxyDepsWorkDir.map { it.dir("node_modules") }) {
+        exclude(".bin/**", ".package-lock.json")
+    }
+    destinationDirectory.set(proxyBundleDir.map { it.dir("proxy") })
+    archiveFileName.set("node_modules.zip")
+    isPreserveFileTimestamps = false
+    isReproducibleFileOrder = true
+
+    doLast {
+        val zip = archiveFile.get().asFile
+        val digest = java.security.MessageDigest.getInstance("SHA-256").digest(zip.readBytes())
+        zip.resolveSibling("node_modules.sha256").writeText(digest.joinToString("") { "%02x".format(it) })
+    }
+}
+
+// Unit tests for the proxy's lib/ modules, on Node's built-in test runner
+// (no npm packages needed). Part of `check`.
+val proxyTestsDir = file("src/test/proxy")
+
+val testProxy by tasks.registering(Exec::class) {
+    description = "Runs the proxy unit tests in src/test/proxy"
+    group = "verification"
+    inputs.dir(proxyTestsDir)
+    inputs.dir(proxyResourcesDir.resolve("lib"))
+    workingDir(proxyTestsDir)
+    val node = if (System.getProperty("os.name").startsWith("Windows")) "node.exe" else "node"
+
+    doFirst {
+        val tests = proxyTestsDir.listFiles { file -> file.name.endsWith(".test.js") }
+            .orEmpty()
+            .map { it.name }
+            .sorted()
+        commandLine(listOf(node, "--test") + tests)
+    }
+}
+
+sourceSets {
+    main {
+        resources.srcDir(proxyManifestDir)
+        resources.srcDir(proxyBundleDir)
+    }
 }
 
 // Configure Gradle IntelliJ Plugin
@@ -33,6 +151,14 @@ tasks {
         kotlinOptions.jvmTarget = "17"
     }
 
+    processResources {
+        dependsOn(generateProxyManifest, bundleProxyDependencies)
+    }
+
+    check {
+        dependsOn(testProxy)
+    }
+
     patchPluginXml {
         sinceBuild.set("243")
         untilBuild.set("300.*")
@@ -0,0 +1,169 @@
+package com.proxyme.rider;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Prebuilt node_modules shipped inside the plugin.
+ *
+ * The build resolves the proxy's pinned dependencies once and packs them as
+ * proxy/node_modules.zip, next to a node_modules.sha256 holding the zip's
+ * hash (see bundleProxyDependencies in build.gradle.kts). Installing means
+ * unpacking that zip into a temp directory and renaming it into place, which
+ * needs neither npm nor the network. The hash is recorded in
+ * node_modules/.proxyme-bundle so an up-to-date install is left untouched.
+ *
+ * Plugins built without the bundle report it as unavailable and callers
+ * fall back to `npm install`.
+ */
+public final class ProxyDependencyBundle {
+
+    private static final Logger LOG = Logger.getInstance(
+        ProxyDependencyBundle.class
+    );
+
+    private static final String BUNDLE_RESOURCE = "proxy/node_modules.zip";
+    private static final String HASH_RESOURCE = "proxy/node_modules.sha256";
+    private static final String MARKER_FILE = ".proxyme-bundle";
+
+    private ProxyDependencyBundle() {}
+
+    /**
+     * Whether this plugin build ships a dependency bundle
+     */
+    public static boolean isAvailable(@NotNull ClassLoader classLoader) {
+        return readBundledHash(classLoader) != null;
+    }
+
+    /**
+     * Make proxyDir/node_modules match the bundled dependencies.
+     *
+     * @param force unpack even if the installed bundle is already current
+     * @return true if node_modules now comes from the bundle; false if the
+     *     plugin has no bundle (the caller should run npm instead)
+     */
+    public static boolean install(
+        @NotNull ClassLoader classLoader,
+        @NotNull File proxyDir,
+        boolean force
+    ) throws IOException {
+        String bundledHash = readBundledHash(classLoader);
+        if (bundledHash == null) {
+            return false;
+        }
+
+        File nodeModules = new File(proxyDir, "node_modules");
+        if (!force && bundledHash.equals(readInstalledHash(nodeModules))) {
+            return true;
+        }
+
+        long started = System.currentTimeMillis();
+        File staging = new File(
+            proxyDir,
+            "node_modules.tmp-" + ProcessHandle.current().pid()
+        );
+        FileUtil.delete(staging);
+
+        try (InputStream in = classLoader.getResourceAsStream(BUNDLE_RESOURCE)) {
+            if (in == null) {
+                return false;
+            }
+            unzip(in, staging.toPath());
+        } catch (IOException e) {
+            FileUtil.delete(staging);
+            throw e;
+        }
+        Files.writeString(
+            new File(staging, MARKER_FILE).toPath(),
+            bundledHash,
+            StandardCharsets.UTF_8
+        );
+
+        // Swap directories; the old tree is moved aside before deleting so
+        // node never resolves modules from a partially deleted directory
+        File previous = new File(
+            proxyDir,
+            "node_modules.old-" + ProcessHandle.current().pid()
+        );
+        if (nodeModules.exists()) {
+            Files.move(
+                nodeModules.toPath(),
+                previous.toPath(),
+                StandardCopyOption.ATOMIC_MOVE
+            );
+        }
+        Files.move(
+            staging.toPath(),
+            nodeModules.toPath(),
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        FileUtil.delete(previous);
+
+        LOG.info(
+            "Unpacked bundled node_modules in " +
+                (System.currentTimeMillis() - started) +
+                "ms"
+        );
+        return true;
+    }
+
+    private static void unzip(InputStream in, Path target) throws IOException {
+        Path root = target.toAbsolutePath().normalize();
+        Files.createDirectories(root);
+
+        try (ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                Path path = root.resolve(entry.getName()).normalize();
+                if (!path.startsWith(root)) {
+                    throw new IOException(
+                        "Bundle entry escapes target: " + entry.getName()
+                    );
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                } else {
+                    Files.createDirectories(path.getParent());
+                    Files.copy(zip, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    private static String readBundledHash(ClassLoader classLoader) {
+        try (InputStream in = classLoader.getResourceAsStream(HASH_RESOURCE)) {
+            if (in == null) {
+                return null;
+            }
+            String hash = new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                .trim();
+            return hash.isEmpty() ? null : hash;
+        } catch (IOException e) {
+            LOG.warn("Could not read bundled dependency hash: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String readInstalledHash(File nodeModules) {
+        File marker = new File(nodeModules, MARKER_FILE);
+        if (!marker.isFile()) {
+            return null;
+        }
+        try {
+            return Files.readString(marker.toPath(), StandardCharsets.UTF_8)
+                .trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
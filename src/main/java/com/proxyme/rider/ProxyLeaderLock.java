@@ -0,0 +1,259 @@
+package com.proxyme.rider;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cross-IDE leader election for the shared proxy.
+ *
+ * Every IDE instance on the machine (Rider, or any other JetBrains IDE with
+ * ProxyMe) points at the same ~/.proxyme/proxy directory and port. The
+ * instance holding an exclusive lock on ~/.proxyme/proxy.lock is the leader
+ * and is the only one allowed to run the node process; it publishes a
+ * leader.json record (owner PID, proxy PID, port, version) next to the lock.
+ * The OS drops the lock when the leader's JVM exits, which is how other
+ * instances notice they can take over. Followers keep a heartbeat file
+ * under ~/.proxyme/followers fresh while they use the leader's proxy, so the
+ * leader knows not to stop it when its own projects are all closed.
+ */
+final class ProxyLeaderLock {
+
+    private static final Logger LOG = Logger.getInstance(ProxyLeaderLock.class);
+
+    private static final String LOCK_FILE = "proxy.lock";
+    private static final String RECORD_FILE = "leader.json";
+    private static final String FOLLOWERS_DIR = "followers";
+    // A follower that hasn't refreshed its heartbeat for this long is gone
+    private static final long FOLLOWER_STALE_MS = 10000;
+
+    private final File proxymeDir;
+    private FileChannel channel;
+    private FileLock fileLock;
+
+    ProxyLeaderLock() {
+        this(new File(System.getProperty("user.home"), ".proxyme"));
+    }
+
+    ProxyLeaderLock(File proxymeDir) {
+        this.proxymeDir = proxymeDir;
+    }
+
+    /**
+     * Try to become leader without blocking.
+     *
+     * @return true if this IDE instance now holds (or already held) the lock
+     */
+    synchronized boolean tryAcquire() {
+        if (isHeld()) {
+            return true;
+        }
+
+        try {
+            proxymeDir.mkdirs();
+            channel = FileChannel.open(
+                new File(proxymeDir, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE
+            );
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held through another channel in this JVM; treat as not ours
+            fileLock = null;
+        } catch (IOException e) {
+            LOG.warn("Could not open leader lock: " + e.getMessage());
+            fileLock = null;
+        }
+
+        if (fileLock == null) {
+            closeChannel();
+            return false;
+        }
+        return true;
+    }
+
+    synchronized boolean isHeld() {
+        return fileLock != null && fileLock.isValid();
+    }
+
+    /**
+     * Publish the leader record (only meaningful while the lock is held)
+     */
+    synchronized void writeRecord(LeaderRecord record) {
+        if (!isHeld()) {
+            return;
+        }
+        Path target = new File(proxymeDir, RECORD_FILE).toPath();
+        Path temp = new File(proxymeDir, RECORD_FILE + ".tmp").toPath();
+        try {
+            try (
+                Writer writer = Files.newBufferedWriter(
+                    temp,
+                    StandardCharsets.UTF_8
+                )
+            ) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(
+                    record,
+                    writer
+                );
+            }
+            Files.move(
+                temp,
+                target,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+            );
+        } catch (IOException e) {
+            LOG.warn("Could not write leader record: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read the current leader record, or null if none has been published
+     */
+    LeaderRecord readRecord() {
+        Path path = new File(proxymeDir, RECORD_FILE).toPath();
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, LeaderRecord.class);
+        } catch (Exception e) {
+            LOG.warn("Could not read leader record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Step down: remove the record and release the lock
+     */
+    synchronized void release() {
+        if (!isHeld()) {
+            closeChannel();
+            return;
+        }
+        try {
+            Files.deleteIfExists(new File(proxymeDir, RECORD_FILE).toPath());
+        } catch (IOException e) {
+            LOG.warn("Could not delete leader record: " + e.getMessage());
+        }
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            // Closing the channel below releases it anyway
+        }
+        fileLock = null;
+        closeChannel();
+    }
+
+    /**
+     * Mark this IDE instance as using the leader's proxy (refreshed on every
+     * follower poll)
+     */
+    void heartbeat() {
+        File dir = new File(proxymeDir, FOLLOWERS_DIR);
+        try {
+            Files.createDirectories(dir.toPath());
+            Files.writeString(
+                new File(dir, String.valueOf(ProcessHandle.current().pid())).toPath(),
+                String.valueOf(System.currentTimeMillis()),
+                StandardCharsets.UTF_8
+            );
+        } catch (IOException e) {
+            LOG.warn("Could not write follower heartbeat: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This IDE instance no longer uses the leader's proxy
+     */
+    void clearHeartbeat() {
+        try {
+            Files.deleteIfExists(
+                new File(
+                    new File(proxymeDir, FOLLOWERS_DIR),
+                    String.valueOf(ProcessHandle.current().pid())
+                ).toPath()
+            );
+        } catch (IOException e) {
+            LOG.warn("Could not remove follower heartbeat: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Number of other IDE instances currently using the proxy as followers.
+     * Heartbeats that went stale or belong to an exited process are removed.
+     */
+    int liveFollowers() {
+        File[] files = new File(proxymeDir, FOLLOWERS_DIR).listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long self = ProcessHandle.current().pid();
+        long now = System.currentTimeMillis();
+        int live = 0;
+        for (File file : files) {
+            long pid;
+            try {
+                pid = Long.parseLong(file.getName());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (pid == self) {
+                continue;
+            }
+            boolean fresh = now - file.lastModified() < FOLLOWER_STALE_MS;
+            if (fresh && ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                live++;
+            } else if (!file.delete()) {
+                LOG.warn("Could not remove stale follower heartbeat " + file);
+            }
+        }
+        return live;
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * leader.json contents
+     */
+    static final class LeaderRecord {
+
+        long ownerPid; // IDE JVM holding the lock
+        long proxyPid; // node supervisor.js process
+        int port;
+        String version;
+        long startedAt;
+
+        LeaderRecord() {}
+
+        LeaderRecord(long ownerPid, long proxyPid, int port, String version) {
+            this.ownerPid = ownerPid;
+            this.proxyPid = proxyPid;
+            this.port = port;
+            this.version = version;
+            this.startedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -86,6 +86,27 @@ public final class ProxyMeModelsConfigService {
                 entry.temperature = model.temperature;
                 entry.stream = model.stream;
                 entry.category = model.modelCategory;
+                entry.maxRetries = Math.max(0, model.maxRetries);
+                if (model.hedge) {
+                    entry.hedge = true;
+                    entry.hedgePercentile = model.hedgePercentile;
+                }
+                if (model.cacheResponses) {
+                    entry.cache = true;
+                    entry.cacheMaxTemperature = model.cacheMaxTemperature;
+                }
+
+                // Add failover targets (keys come from .env by provider)
+                if (model.fallbacks != null && !model.fallbacks.isEmpty()) {
+                    entry.fallbacks = new ArrayList<>();
+                    for (ProxyMeSettings.FallbackTarget target : model.fallbacks) {
+                        FallbackEntry fallback = new FallbackEntry();
+                        fallback.provider = target.apiProvider;
+                        fallback.endpoint = target.apiEndpoint;
+                        fallback.model = target.modelName;
+                        entry.fallbacks.add(fallback);
+                    }
+                }
 
                 // Add custom headers (excluding Authorization which is handled separately)
                 if (model.customHeaders != null && !model.customHeaders.isEmpty()) {
@@ -228,7 +249,22 @@ public final class ProxyMeModelsConfigService {
         double temperature;
         boolean stream;
         String category;
+        int maxRetries;
+        Boolean hedge;
+        Integer hedgePercentile;
+        Boolean cache;
+        Double cacheMaxTemperature;
         Map<String, String> customHeaders;
         Map<String, String> customBodyParams;
+        List<FallbackEntry> fallbacks;
+    }
+
+    /**
+     * Failover target within a model entry
+     */
+    private static class FallbackEntry {
+        String provider;
+        String endpoint;
+        String model;
     }
 }
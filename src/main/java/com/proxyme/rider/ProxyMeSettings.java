@@ -44,6 +44,26 @@ public class ProxyMeSettings
     public int proxyPort = 3000;
     public String proxyHost = "localhost";
 
+    // Maximum time to wait for a launched proxy to answer /health
+    public int startupTimeoutSeconds = 15;
+
+    // Keep-alive connection pool to each provider (see proxy/lib/upstream-pool.js)
+    public int upstreamMaxSockets = 16;
+    public int upstreamIdleTimeoutSeconds = 30;
+    public boolean upstreamHttp2 = false;
+
+    // Client buffer above which a relayed stream pauses the provider
+    public int streamHighWaterMarkKb = 64;
+
+    // In-memory cache of deterministic completions (models opt in)
+    public int responseCacheMb = 64;
+    public int responseCacheTtlMinutes = 60;
+    // Disk tier under ~/.proxyme/cache that survives proxy restarts
+    public int diskCacheMb = 256;
+
+    // Normalize request prefixes and add provider prompt-cache hints
+    public boolean promptCacheHints = true;
+
     // Logging settings
     public boolean showLogsInTerminal = true;
     public boolean saveLogsToFile = true;
@@ -99,6 +119,24 @@ public class ProxyMeSettings
         public double temperature = 0.3; // 0.0 - 2.0 (default: 0.3 for focused, precise responses)
         public boolean stream = true;
 
+        // Retries for transient provider errors (429/5xx, dropped
+        // connections) before any output has reached Rider
+        public int maxRetries = 2;
+
+        // Send a second (hedge) request when the first has no first byte
+        // after this percentile of the model's recent time-to-first-byte
+        public boolean hedge = false;
+        public int hedgePercentile = 95;
+
+        // Answer repeats of an identical request from the proxy's response
+        // cache, when its temperature is at most cacheMaxTemperature
+        public boolean cacheResponses = false;
+        public double cacheMaxTemperature = 0.0;
+
+        // Tried in order when this model's own endpoint fails (connect
+        // error, timeout or 5xx before any output)
+        public List<FallbackTarget> fallbacks = new ArrayList<>();
+
         // Custom headers and body parameters (like ProxyAI)
         public Map<String, String> customHeaders = new HashMap<>();
         public Map<String, String> customBodyParams = new HashMap<>();
@@ -168,12 +206,57 @@ public class ProxyMeSettings
         }
     }
 
+    /**
+     * Failover target for a model: another provider/endpoint and the model id
+     * to request there. Uses that provider's API key from .env.
+     */
+    public static class FallbackTarget {
+
+        public String apiProvider = "";
+        public String apiEndpoint = "";
+        public String modelName = "";
+
+        public FallbackTarget() {}
+
+        public FallbackTarget(
+            String apiProvider,
+            String apiEndpoint,
+            String modelName
+        ) {
+            this.apiProvider = apiProvider;
+            this.apiEndpoint = apiEndpoint;
+            this.modelName = modelName;
+        }
+
+        /**
+         * Deep copy of a fallback list (null-safe, for template round trips)
+         */
+        public static List<FallbackTarget> copyAll(
+            @Nullable List<FallbackTarget> targets
+        ) {
+            List<FallbackTarget> copy = new ArrayList<>();
+            if (targets != null) {
+                for (FallbackTarget target : targets) {
+                    copy.add(
+                        new FallbackTarget(
+                            target.apiProvider,
+                            target.apiEndpoint,
+                            target.modelName
+                        )
+                    );
+                }
+            }
+            return copy;
+        }
+    }
+
     /**
      * Proxy Status Enum
      */
     public enum ProxyStatus {
         ACTIVE, // Green - Running normally
         WARNING, // Orange - Running with warnings
+        DEGRADED, // Purple - Running, but a provider circuit breaker is open
         INACTIVE, // Red - Not running
     }
 }
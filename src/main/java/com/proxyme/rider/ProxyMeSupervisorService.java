@@ -0,0 +1,1503 @@
+package com.proxyme.rider;
+
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.OSProcessHandler;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import com.intellij.ide.plugins.PluginManagerCore;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * ProxyMe Supervisor Service
+ * Owns the single shared proxy process for the whole IDE.
+ *
+ * The proxy directory (~/.proxyme/proxy) and port are shared by every open
+ * project, so the process lives at application level. Projects attach when
+ * they want the proxy and detach when they close; the process is stopped
+ * once the last project detaches, or, while other IDE instances still use
+ * it, once the last of them has gone too. A project opened while the proxy
+ * is already running attaches to it without paying another startup.
+ *
+ * Across IDE instances only the holder of {@link ProxyLeaderLock} runs the
+ * process. Other instances attach to the leader's proxy as clients, poll
+ * for the lock, and take over if the leader goes away.
+ *
+ * While projects are attached, an unexpected exit is restarted according to
+ * {@link ProxyRestartPolicy} (the leader lock is kept meanwhile), and a
+ * liveness watchdog kills a process that stops answering /health so it goes
+ * through the same restart path.
+ */
+@Service(Service.Level.APP)
+public final class ProxyMeSupervisorService {
+
+    private static final String PLUGIN_ID = "com.proxyme.rider";
+    private static final long FOLLOWER_POLL_SECONDS = 2;
+    private static final long LIVENESS_INTERVAL_SECONDS = 10;
+    private static final int LIVENESS_TIMEOUT_MS = 3000;
+    private static final int LIVENESS_MAX_FAILURES = 3;
+    // Tuning settings for proxy workers, see writeTuningFile
+    private static final String TUNING_FILE = "tuning.env";
+
+    private final Object lock = new Object();
+    private final ProxyLeaderLock leaderLock = new ProxyLeaderLock();
+    private final ProxyRestartPolicy restartPolicy = new ProxyRestartPolicy();
+
+    // Projects currently using the proxy (the reference count)
+    private final Set<Project> attachedProjects = new LinkedHashSet<>();
+
+    private Process proxyProcess;
+    private OSProcessHandler processHandler;
+    private CompletableFuture<Void> startup;
+    private volatile ProxyMeSettings.ProxyStatus currentStatus =
+        ProxyMeSettings.ProxyStatus.INACTIVE;
+    private int runningPort;
+    private String runningHealthUrl;
+    private long processStartedAt;
+
+    // Handler being shut down on purpose; its exit is not a crash
+    private OSProcessHandler stoppingHandler;
+    private ScheduledFuture<?> livenessWatch;
+    private int livenessFailures;
+
+    // Set while another IDE instance owns the proxy and we are its client
+    private volatile ProxyLeaderLock.LeaderRecord followedLeader;
+    private ScheduledFuture<?> followerWatch;
+    // Set while we lead with no projects of our own, serving followers only
+    private ScheduledFuture<?> lingerWatch;
+
+    private File proxyDirectory;
+    private File logFile;
+    private BufferedWriter logWriter;
+
+    public static ProxyMeSupervisorService getInstance() {
+        return ApplicationManager.getApplication().getService(
+            ProxyMeSupervisorService.class
+        );
+    }
+
+    public boolean isProxyRunning() {
+        return isLocalProcessAlive() || isFollowingActiveLeader();
+    }
+
+    /**
+     * True when the proxy is owned by another IDE instance
+     */
+    public boolean isFollower() {
+        return followedLeader != null;
+    }
+
+    private boolean isLocalProcessAlive() {
+        Process process = proxyProcess;
+        return process != null && process.isAlive();
+    }
+
+    private boolean isFollowingActiveLeader() {
+        return followedLeader != null && isServing(currentStatus);
+    }
+
+    public ProxyMeSettings.ProxyStatus getStatus() {
+        return currentStatus;
+    }
+
+    /**
+     * Statuses in which the proxy answers requests
+     */
+    private static boolean isServing(ProxyMeSettings.ProxyStatus status) {
+        return (
+            status == ProxyMeSettings.ProxyStatus.ACTIVE ||
+            status == ProxyMeSettings.ProxyStatus.DEGRADED
+        );
+    }
+
+    private static ProxyMeSettings.ProxyStatus toStatus(
+        ProxyReadinessProbe.Health health
+    ) {
+        switch (health) {
+            case HEALTHY:
+                return ProxyMeSettings.ProxyStatus.ACTIVE;
+            case DEGRADED:
+                return ProxyMeSettings.ProxyStatus.DEGRADED;
+            case UNREACHABLE:
+            default:
+                return ProxyMeSettings.ProxyStatus.WARNING;
+        }
+    }
+
+    /**
+     * The node supervisor process, whether this IDE owns it or follows it
+     */
+    @Nullable
+    ProcessHandle getProxyProcessHandle() {
+        Process process = proxyProcess;
+        if (process != null && process.isAlive()) {
+            return process.toHandle();
+        }
+        ProxyLeaderLock.LeaderRecord record = followedLeader;
+        if (record != null && record.proxyPid > 0) {
+            return ProcessHandle.of(record.proxyPid).orElse(null);
+        }
+        return null;
+    }
+
+    /**
+     * Port the running proxy listens on, or -1 if none
+     */
+    int getProxyPort() {
+        if (isLocalProcessAlive()) {
+            return runningPort;
+        }
+        ProxyLeaderLock.LeaderRecord record = followedLeader;
+        return record != null ? record.port : -1;
+    }
+
+    /**
+     * Number of projects currently attached to the proxy
+     */
+    public int getAttachedProjectCount() {
+        synchronized (lock) {
+            return attachedProjects.size();
+        }
+    }
+
+    public boolean isAttached(@NotNull Project project) {
+        synchronized (lock) {
+            return attachedProjects.contains(project);
+        }
+    }
+
+    private void setStatus(ProxyMeSettings.ProxyStatus status) {
+        this.currentStatus = status;
+        for (Project project : snapshotAttached()) {
+            if (!project.isDisposed()) {
+                ProxyMeSettings.getInstance(project).lastStatus = status;
+            }
+        }
+    }
+
+    /**
+     * Attach a project to the shared proxy, launching it if nobody has yet.
+     * The project's settings (port, timeout) are used for the launch.
+     */
+    public void attach(@NotNull Project project) {
+        synchronized (lock) {
+            boolean added = attachedProjects.add(project);
+
+            if (isProxyRunning()) {
+                if (added) {
+                    writeToLog(
+                        "Project '" +
+                            project.getName() +
+                            "' attached to running proxy (" +
+                            attachedProjects.size() +
+                            " attached)"
+                    );
+                    ProxyMeSettings.getInstance(project).lastStatus =
+                        currentStatus;
+                    notifyUser(
+                        project,
+                        "Attached to running proxy on port " +
+                            ProxyMeSettings.getInstance(project).proxyPort,
+                        NotificationType.INFORMATION
+                    );
+                } else {
+                    notifyUser(
+                        project,
+                        "Proxy is already running",
+                        NotificationType.WARNING
+                    );
+                }
+                return;
+            }
+
+            if (startup != null && !startup.isDone()) {
+                // Another project is already launching it; just join
+                writeToLog(
+                    "Project '" +
+                        project.getName() +
+                        "' joined pending proxy startup"
+                );
+                return;
+            }
+
+            startup = CompletableFuture.runAsync(() ->
+                acquireOrFollow(project)
+            );
+        }
+    }
+
+    /**
+     * Become leader and launch, or attach to another instance's proxy
+     */
+    private void acquireOrFollow(@NotNull Project project) {
+        if (leaderLock.tryAcquire()) {
+            launch(project);
+            return;
+        }
+
+        ProxyMeSettings settings = ProxyMeSettings.getInstance(project);
+        ProxyLeaderLock.LeaderRecord record = leaderLock.readRecord();
+        int port = record != null ? record.port : settings.proxyPort;
+        writeToLog(
+            "Proxy is owned by another IDE instance" +
+                (record != null ? " (PID " + record.ownerPid + ")" : "") +
+                " on port " +
+                port +
+                "; attaching as client"
+        );
+        followedLeader = record != null
+            ? record
+            : new ProxyLeaderLock.LeaderRecord(0, 0, port, null);
+        leaderLock.heartbeat();
+        refreshFollowerStatus(settings.proxyHost);
+        startFollowerWatch();
+
+        notifyUser(
+            project,
+            isServing(currentStatus)
+                ? "Using proxy on port " +
+                port +
+                " owned by another IDE instance"
+                : "Another IDE instance is starting the proxy on port " +
+                port +
+                "; waiting for it",
+            NotificationType.INFORMATION
+        );
+    }
+
+    /**
+     * Poll the leader lock while we are a client; take over if it is free
+     */
+    private void startFollowerWatch() {
+        synchronized (lock) {
+            if (followerWatch != null) {
+                return;
+            }
+            followerWatch =
+                AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                    this::followerTick,
+                    FOLLOWER_POLL_SECONDS,
+                    FOLLOWER_POLL_SECONDS,
+                    TimeUnit.SECONDS
+                );
+        }
+    }
+
+    private void stopFollowing() {
+        synchronized (lock) {
+            if (followerWatch != null) {
+                followerWatch.cancel(false);
+                followerWatch = null;
+            }
+            followedLeader = null;
+        }
+        leaderLock.clearHeartbeat();
+    }
+
+    private void followerTick() {
+        Project project = firstAttachedProject();
+        if (project == null) {
+            stopFollowing();
+            return;
+        }
+
+        if (leaderLock.tryAcquire()) {
+            ProxyLeaderLock.LeaderRecord previous = followedLeader;
+            writeToLog("Proxy leader went away; taking over");
+            stopFollowing();
+            terminateStaleProxy(previous);
+            launch(project);
+            return;
+        }
+
+        leaderLock.heartbeat();
+        ProxyLeaderLock.LeaderRecord record = leaderLock.readRecord();
+        if (record != null) {
+            followedLeader = record;
+        }
+        refreshFollowerStatus(ProxyMeSettings.getInstance(project).proxyHost);
+    }
+
+    private void refreshFollowerStatus(String host) {
+        ProxyLeaderLock.LeaderRecord record = followedLeader;
+        if (record == null) {
+            return;
+        }
+        ProxyMeSettings.ProxyStatus status = toStatus(
+            ProxyReadinessProbe.checkHealthState(
+                "http://" + host + ":" + record.port + "/health",
+                2000
+            )
+        );
+        if (status != currentStatus) {
+            setStatus(status);
+        }
+    }
+
+    /**
+     * A dead leader may have left its node process behind on the port
+     */
+    private void terminateStaleProxy(
+        @Nullable ProxyLeaderLock.LeaderRecord record
+    ) {
+        ProxyPidFile pidFile = ProxyPidFile.read(getProxyDirectory());
+        if (pidFile == null) {
+            return;
+        }
+        pidFile
+            .findLiveOwner()
+            .ifPresent(handle -> {
+                writeToLog(
+                    "Stopping proxy left behind by previous leader (PID " +
+                        handle.pid() +
+                        (record != null ? ", owner PID " + record.ownerPid : "") +
+                        ")"
+                );
+                ProxyPidFile.terminateTree(handle, 5000);
+            });
+    }
+
+    @Nullable
+    private Project firstAttachedProject() {
+        synchronized (lock) {
+            for (Project project : attachedProjects) {
+                if (!project.isDisposed()) {
+                    return project;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Detach a project; stops the proxy when the last project detaches,
+     * unless other IDE instances are following it (see lingerTick).
+     */
+    public void detach(@NotNull Project project) {
+        boolean stopNow;
+        synchronized (lock) {
+            if (!attachedProjects.remove(project)) {
+                return;
+            }
+            writeToLog(
+                "Project '" +
+                    project.getName() +
+                    "' detached (" +
+                    attachedProjects.size() +
+                    " still attached)"
+            );
+            stopNow = attachedProjects.isEmpty() && isLocalProcessAlive();
+            if (attachedProjects.isEmpty() && isFollower()) {
+                stopFollowing();
+                setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+            }
+        }
+
+        if (!stopNow) {
+            return;
+        }
+        int followers = leaderLock.liveFollowers();
+        if (followers > 0) {
+            // Stopping now would take the proxy away from them until one
+            // noticed, took the lock and launched it again
+            writeToLog(
+                "Last project detached; keeping proxy up for " +
+                    followers +
+                    " other IDE instance(s) using it"
+            );
+            startLingerWatch();
+        } else {
+            stopProcess(null);
+        }
+    }
+
+    private void startLingerWatch() {
+        synchronized (lock) {
+            if (lingerWatch != null) {
+                return;
+            }
+            lingerWatch =
+                AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                    this::lingerTick,
+                    FOLLOWER_POLL_SECONDS,
+                    FOLLOWER_POLL_SECONDS,
+                    TimeUnit.SECONDS
+                );
+        }
+    }
+
+    private void stopLingering() {
+        synchronized (lock) {
+            if (lingerWatch != null) {
+                lingerWatch.cancel(false);
+                lingerWatch = null;
+            }
+        }
+    }
+
+    /**
+     * Leader without projects of its own: keep serving followers until the
+     * last one goes away, or until a project here attaches again
+     */
+    private void lingerTick() {
+        synchronized (lock) {
+            if (!attachedProjects.isEmpty() || !isLocalProcessAlive()) {
+                stopLingering();
+                return;
+            }
+        }
+        if (leaderLock.liveFollowers() == 0) {
+            writeToLog("No other IDE instance is using the proxy anymore");
+            stopProcess(null);
+        }
+    }
+
+    /**
+     * Stop the shared proxy for every attached project
+     */
+    public void stop(@Nullable Project requester) {
+        if (isFollower()) {
+            // Not ours to stop; just disconnect this IDE instance
+            synchronized (lock) {
+                attachedProjects.clear();
+            }
+            stopFollowing();
+            currentStatus = ProxyMeSettings.ProxyStatus.INACTIVE;
+            notifyUser(
+                requester,
+                "The proxy is owned by another IDE instance and keeps running there. This IDE is now detached from it.",
+                NotificationType.INFORMATION
+            );
+            return;
+        }
+
+        if (!isLocalProcessAlive()) {
+            notifyUser(
+                requester,
+                "Proxy is not running",
+                NotificationType.WARNING
+            );
+            setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+            synchronized (lock) {
+                attachedProjects.clear();
+            }
+            return;
+        }
+
+        int others;
+        synchronized (lock) {
+            others = attachedProjects.size() - (
+                    requester != null && attachedProjects.contains(requester)
+                        ? 1
+                        : 0
+                );
+            attachedProjects.clear();
+        }
+        if (others > 0) {
+            writeToLog(
+                "Stopping proxy shared with " + others + " other project(s)"
+            );
+        }
+        stopProcess(requester);
+    }
+
+    /**
+     * Launch sequence (runs off the UI thread)
+     */
+    private void launch(@NotNull Project project) {
+        try {
+            notifyUser(
+                project,
+                "Starting proxy server...",
+                NotificationType.INFORMATION
+            );
+            StartupTimer timer = new StartupTimer();
+
+            // Step 1: Extract proxy files
+            extractProxyFiles();
+            timer.phase("extract");
+
+            // Step 2: Resolve Node.js (cached across launches)
+            ProxyMeToolchainService.Toolchain toolchain =
+                ProxyMeToolchainService.getInstance().resolve();
+            if (toolchain == null) {
+                notifyUser(
+                    project,
+                    "Node.js is not installed. Please install Node.js from https://nodejs.org/",
+                    NotificationType.ERROR
+                );
+                setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+                leaderLock.release();
+                return;
+            }
+            writeToLog(
+                "Using Node.js " + toolchain.version + " at " + toolchain.nodePath
+            );
+            timer.phase("node");
+
+            // Step 3: Unpack bundled dependencies, or run npm install if
+            // this build has no bundle
+            File nodeModules = new File(proxyDirectory, "node_modules");
+            boolean bundled = installBundledDependencies();
+            if (!bundled && !nodeModules.exists()) {
+                notifyUser(
+                    project,
+                    "Installing dependencies (this may take a minute)...",
+                    NotificationType.INFORMATION
+                );
+                if (!runNpmInstall(toolchain)) {
+                    notifyUser(
+                        project,
+                        "Failed to install dependencies",
+                        NotificationType.ERROR
+                    );
+                    setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+                    leaderLock.release();
+                    return;
+                }
+            }
+            timer.phase("dependencies");
+
+            // Step 4: Generate .env file with API keys, and tuning.env
+            generateEnvFile(project);
+            writeTuningFile(ProxyMeSettings.getInstance(project));
+            timer.phase("env");
+
+            // Step 5: Start the proxy process (on a port that is ours to take)
+            ProxyMeSettings settings = ProxyMeSettings.getInstance(project);
+            if (!ensurePortAvailable(settings.proxyPort)) {
+                notifyUser(
+                    project,
+                    "Port " +
+                        settings.proxyPort +
+                        " is in use by another application. Choose a different port in ProxyMe settings.",
+                    NotificationType.ERROR
+                );
+                setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+                leaderLock.release();
+                return;
+            }
+            timer.phase("port");
+            ProxyReadinessProbe probe = new ProxyReadinessProbe();
+            try {
+                startProxyProcess(settings, toolchain, probe);
+            } catch (com.intellij.execution.ExecutionException e) {
+                // The cached node could not be spawned (moved, uninstalled):
+                // probe again on the next launch
+                ProxyMeToolchainService.getInstance().invalidate();
+                throw e;
+            }
+            timer.phase("spawn");
+
+            // Step 6: Wait until the proxy reports ready (or give up)
+            ProxyReadinessProbe.Result result = probe.awaitReady(
+                proxyProcess,
+                getHealthUrl(settings),
+                settings.startupTimeoutSeconds * 1000L
+            );
+            timer.phase(
+                probe.sawListeningMarker() ? "ready" : "ready (no marker)"
+            );
+            writeToLog("Startup phases: " + timer.summary());
+
+            // An exit is handled by the termination listener (crash restart
+            // or lock release); anything else gets watched from now on
+            if (result != ProxyReadinessProbe.Result.EXITED) {
+                startLivenessWatch();
+            }
+
+            switch (result) {
+                case READY:
+                    setStatus(ProxyMeSettings.ProxyStatus.ACTIVE);
+                    notifyUser(
+                        project,
+                        "Proxy server started successfully on port " +
+                            settings.proxyPort +
+                            " in " +
+                            timer.totalMillis() +
+                            " ms",
+                        NotificationType.INFORMATION
+                    );
+                    break;
+                case EXITED:
+                    notifyUser(
+                        project,
+                        "Proxy process exited during startup. Check the log for details.",
+                        NotificationType.ERROR
+                    );
+                    break;
+                case TIMED_OUT:
+                default:
+                    setStatus(ProxyMeSettings.ProxyStatus.WARNING);
+                    notifyUser(
+                        project,
+                        "Proxy started but did not pass the health check within " +
+                            settings.startupTimeoutSeconds +
+                            " seconds",
+                        NotificationType.WARNING
+                    );
+                    break;
+            }
+        } catch (Exception e) {
+            notifyUser(
+                project,
+                "Failed to start proxy: " + e.getMessage(),
+                NotificationType.ERROR
+            );
+            setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+            leaderLock.release();
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Extract proxy files from plugin resources to the shared proxy directory
+     */
+    private void extractProxyFiles() throws IOException {
+        File proxyDir = getProxyDirectory();
+        proxyDir.mkdirs();
+        getLogFile();
+
+        // Only files whose content hash changed are rewritten
+        int written = ProxyRuntimeExtractor.extract(
+            getClass().getClassLoader(),
+            proxyDir
+        );
+        if (written > 0) {
+            writeToLog("Updated " + written + " proxy file(s)");
+        }
+    }
+
+    /**
+     * Install node_modules from the bundle shipped in the plugin
+     *
+     * @return false if there is no bundle or unpacking failed
+     */
+    private boolean installBundledDependencies() {
+        try {
+            return ProxyDependencyBundle.install(
+                getClass().getClassLoader(),
+                proxyDirectory,
+                false
+            );
+        } catch (IOException e) {
+            writeToLog(
+                "Unpacking bundled dependencies failed, falling back to npm: " +
+                    e.getMessage()
+            );
+            return false;
+        }
+    }
+
+    /**
+     * Run npm install in proxy directory
+     */
+    private boolean runNpmInstall(ProxyMeToolchainService.Toolchain toolchain) {
+        try {
+            ProcessBuilder pb = new ProcessBuilder(toolchain.npmPath, "install");
+            pb.directory(proxyDirectory);
+            pb.redirectErrorStream(true);
+
+            // Add Node.js bin directory to PATH
+            ProxyMeToolchainService.prependToPath(toolchain, pb.environment());
+
+            Process process = pb.start();
+
+            // Capture output
+            try (
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream())
+                )
+            ) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    writeToLog("npm install: " + line);
+                }
+            }
+
+            int exitCode = process.waitFor();
+            return exitCode == 0;
+        } catch (Exception e) {
+            writeToLog("npm install failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Generate .env file with API keys from settings
+     */
+    private void generateEnvFile(@NotNull Project project) throws IOException {
+        ProxyMeSettings settings = ProxyMeSettings.getInstance(project);
+
+        // Generate .env file in shared proxy directory
+        File envFile = new File(proxyDirectory, ".env");
+
+        // If .env already exists with keys, don't overwrite
+        if (envFile.exists()) {
+            writeToLog(".env file already exists, keeping existing API keys");
+        } else {
+            // Use ProxyMeEnvFileService to generate .env file with API keys from model configs
+            ProxyMeEnvFileService envFileService = new ProxyMeEnvFileService();
+            envFileService.generateEnvFile(project, settings);
+        }
+    }
+
+    /**
+     * Write the tuning settings to tuning.env, which every proxy worker
+     * reads when it starts. Unlike the process environment, which a worker
+     * inherits from the supervisor as it was at launch, this also reaches
+     * the new worker of a blue/green reload.
+     */
+    private void writeTuningFile(ProxyMeSettings settings) throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(
+            "PROXYME_POOL_MAX_SOCKETS",
+            String.valueOf(Math.max(settings.upstreamMaxSockets, 1))
+        );
+        values.put(
+            "PROXYME_POOL_IDLE_TIMEOUT_MS",
+            String.valueOf(Math.max(settings.upstreamIdleTimeoutSeconds, 1) * 1000L)
+        );
+        values.put("PROXYME_POOL_HTTP2", String.valueOf(settings.upstreamHttp2));
+        values.put(
+            "PROXYME_STREAM_HIGH_WATER_MARK",
+            String.valueOf(Math.max(settings.streamHighWaterMarkKb, 1) * 1024L)
+        );
+        values.put(
+            "PROXYME_RESPONSE_CACHE_MAX_BYTES",
+            String.valueOf(Math.max(settings.responseCacheMb, 0) * 1024L * 1024L)
+        );
+        values.put(
+            "PROXYME_RESPONSE_CACHE_TTL_MS",
+            String.valueOf(Math.max(settings.responseCacheTtlMinutes, 1) * 60000L)
+        );
+        values.put(
+            "PROXYME_DISK_CACHE_MAX_BYTES",
+            String.valueOf(Math.max(settings.diskCacheMb, 0) * 1024L * 1024L)
+        );
+        values.put(
+            "PROXYME_PROMPT_CACHE_HINTS",
+            String.valueOf(settings.promptCacheHints)
+        );
+
+        StringBuilder content = new StringBuilder(
+            "# Generated by ProxyMe from the plugin settings; rewritten on every start and restart\n"
+        );
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        Files.writeString(
+            new File(getProxyDirectory(), TUNING_FILE).toPath(),
+            content.toString(),
+            StandardCharsets.UTF_8
+        );
+    }
+
+    /**
+     * Start the proxy process
+     */
+    private void startProxyProcess(
+        ProxyMeSettings settings,
+        ProxyMeToolchainService.Toolchain toolchain,
+        ProxyReadinessProbe probe
+    ) throws IOException, com.intellij.execution.ExecutionException {
+        // Build command
+        GeneralCommandLine commandLine = new GeneralCommandLine();
+        commandLine.setExePath(toolchain.nodePath);
+        commandLine.addParameter("supervisor.js");
+        commandLine.setWorkDirectory(proxyDirectory);
+
+        // Add environment variables
+        commandLine.withEnvironment("PORT", String.valueOf(settings.proxyPort));
+        commandLine.withEnvironment("DEBUG", "true");
+
+        // Start process
+        OSProcessHandler handler = new OSProcessHandler(commandLine);
+
+        // Attach output listener
+        handler.addProcessListener(
+            new ProcessAdapter() {
+                @Override
+                public void onTextAvailable(
+                    @NotNull ProcessEvent event,
+                    @NotNull Key outputType
+                ) {
+                    String text = event.getText().trim();
+                    if (!text.isEmpty()) {
+                        probe.onOutput(text);
+                        writeToLog(text);
+                    }
+                }
+
+                @Override
+                public void processTerminated(@NotNull ProcessEvent event) {
+                    writeToLog(
+                        "Proxy process terminated with exit code: " +
+                            event.getExitCode()
+                    );
+                    boolean current;
+                    boolean crashed;
+                    synchronized (lock) {
+                        current = processHandler == handler;
+                        crashed =
+                            current &&
+                            stoppingHandler != handler &&
+                            !attachedProjects.isEmpty();
+                        if (current) {
+                            proxyProcess = null;
+                            processHandler = null;
+                        }
+                    }
+                    if (!current) {
+                        // A replaced process; its successor owns the state
+                        return;
+                    }
+                    stopLivenessWatch();
+                    if (crashed) {
+                        handleCrash(event.getExitCode());
+                        return;
+                    }
+                    setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+                    leaderLock.release();
+                    closeLog();
+                }
+            }
+        );
+
+        // Start the process
+        handler.startNotify();
+        synchronized (lock) {
+            processHandler = handler;
+            proxyProcess = handler.getProcess();
+            runningPort = settings.proxyPort;
+            runningHealthUrl = getHealthUrl(settings);
+            processStartedAt = System.currentTimeMillis();
+        }
+
+        // Tell other IDE instances where the proxy lives
+        leaderLock.writeRecord(
+            new ProxyLeaderLock.LeaderRecord(
+                ProcessHandle.current().pid(),
+                proxyProcess.pid(),
+                settings.proxyPort,
+                getPluginVersion()
+            )
+        );
+
+        writeToLog("=== Proxy Started ===");
+        writeToLog("Running: node supervisor.js (proxy.js worker)");
+        writeToLog("Port: " + settings.proxyPort);
+        writeToLog("Log file: " + logFile.getAbsolutePath());
+    }
+
+    /**
+     * Health endpoint URL for the configured host and port
+     */
+    private static String getHealthUrl(ProxyMeSettings settings) {
+        return (
+            "http://" +
+            settings.proxyHost +
+            ":" +
+            settings.proxyPort +
+            "/health"
+        );
+    }
+
+    /**
+     * Unexpected exit: restart after a backoff, or give up on a crash loop.
+     * The leader lock stays held so no other IDE instance grabs the port
+     * while we wait.
+     */
+    private void handleCrash(int exitCode) {
+        long uptime = System.currentTimeMillis() - processStartedAt;
+        long delay = restartPolicy.onCrash(uptime);
+        Project project = firstAttachedProject();
+
+        if (delay < 0 || project == null) {
+            int crashes = restartPolicy.recentCrashCount();
+            restartPolicy.reset();
+            setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+            leaderLock.release();
+            if (project != null) {
+                writeToLog(
+                    "Proxy crashed " +
+                        crashes +
+                        " times within " +
+                        ProxyRestartPolicy.CRASH_WINDOW_MS / 1000 +
+                        "s; giving up on automatic restart"
+                );
+                notifyUser(
+                    project,
+                    "Proxy keeps crashing (" +
+                        crashes +
+                        " times in " +
+                        ProxyRestartPolicy.CRASH_WINDOW_MS / 1000 +
+                        " s), automatic restart stopped. Check the log, then launch it again.",
+                    NotificationType.ERROR
+                );
+            }
+            closeLog();
+            return;
+        }
+
+        writeToLog(
+            "Proxy exited unexpectedly (code " +
+                exitCode +
+                ", up " +
+                uptime +
+                "ms); restarting in " +
+                delay +
+                "ms"
+        );
+        setStatus(ProxyMeSettings.ProxyStatus.WARNING);
+        notifyUser(
+            project,
+            "Proxy stopped unexpectedly (exit code " +
+                exitCode +
+                "), restarting in " +
+                Math.max(1, delay / 1000) +
+                " s",
+            NotificationType.WARNING
+        );
+
+        synchronized (lock) {
+            startup = CompletableFuture.runAsync(
+                this::restartAfterCrash,
+                CompletableFuture.delayedExecutor(
+                    delay,
+                    TimeUnit.MILLISECONDS,
+                    AppExecutorUtil.getAppExecutorService()
+                )
+            );
+        }
+    }
+
+    private void restartAfterCrash() {
+        Project project = firstAttachedProject();
+        if (project == null) {
+            // Everyone detached (or Stop was pressed) during the backoff
+            writeToLog("No projects attached anymore; not restarting proxy");
+            restartPolicy.reset();
+            leaderLock.release();
+            setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+            return;
+        }
+        if (isLocalProcessAlive()) {
+            return;
+        }
+        writeToLog("=== Restarting Proxy After Crash ===");
+        launch(project);
+    }
+
+    /**
+     * Periodically check that the proxy still answers /health
+     */
+    private void startLivenessWatch() {
+        synchronized (lock) {
+            if (livenessWatch != null) {
+                livenessWatch.cancel(false);
+            }
+            livenessFailures = 0;
+            livenessWatch =
+                AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                    this::livenessTick,
+                    LIVENESS_INTERVAL_SECONDS,
+                    LIVENESS_INTERVAL_SECONDS,
+                    TimeUnit.SECONDS
+                );
+        }
+    }
+
+    private void stopLivenessWatch() {
+        synchronized (lock) {
+            if (livenessWatch != null) {
+                livenessWatch.cancel(false);
+                livenessWatch = null;
+            }
+        }
+    }
+
+    private void livenessTick() {
+        Process process;
+        String healthUrl;
+        synchronized (lock) {
+            process = proxyProcess;
+            healthUrl = runningHealthUrl;
+        }
+        if (process == null || !process.isAlive() || healthUrl == null) {
+            return;
+        }
+
+        ProxyReadinessProbe.Health health =
+            ProxyReadinessProbe.checkHealthState(healthUrl, LIVENESS_TIMEOUT_MS);
+        if (health != ProxyReadinessProbe.Health.UNREACHABLE) {
+            if (livenessFailures > 0) {
+                writeToLog("Proxy answering /health again");
+            }
+            livenessFailures = 0;
+            ProxyMeSettings.ProxyStatus status = toStatus(health);
+            if (status != currentStatus) {
+                if (status == ProxyMeSettings.ProxyStatus.DEGRADED) {
+                    writeToLog(
+                        "Provider circuit breaker open; see circuit_breakers in /health"
+                    );
+                } else if (
+                    currentStatus == ProxyMeSettings.ProxyStatus.DEGRADED
+                ) {
+                    writeToLog("All provider circuit breakers closed again");
+                }
+                setStatus(status);
+            }
+            return;
+        }
+
+        livenessFailures++;
+        writeToLog(
+            "Health check failed (" +
+                livenessFailures +
+                "/" +
+                LIVENESS_MAX_FAILURES +
+                ")"
+        );
+        if (livenessFailures < LIVENESS_MAX_FAILURES) {
+            setStatus(ProxyMeSettings.ProxyStatus.WARNING);
+            return;
+        }
+
+        // Event loop is stuck; kill it and let the crash path restart it
+        writeToLog("Proxy stopped answering /health; killing hung process");
+        livenessFailures = 0;
+        stopLivenessWatch();
+        process.toHandle().descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Terminate the proxy process
+     */
+    private void stopProcess(@Nullable Project requester) {
+        OSProcessHandler handler;
+        Process process;
+        synchronized (lock) {
+            handler = processHandler;
+            process = proxyProcess;
+            stoppingHandler = handler;
+        }
+        stopLingering();
+        stopLivenessWatch();
+        restartPolicy.reset();
+
+        try {
+            writeToLog("=== Stopping Proxy ===");
+
+            // SIGTERM the supervisor and its workers, force after 5s
+            if (process != null) {
+                if (!ProxyPidFile.terminateTree(process.toHandle(), 5000)) {
+                    writeToLog("Proxy process tree did not exit");
+                }
+            } else if (handler != null) {
+                handler.destroyProcess();
+            }
+
+            // A proxy orphaned by an earlier IDE session, if proxy.pid
+            // still points at a live supervisor
+            terminateOrphanedProxy();
+
+            if (runningPort > 0 && !isPortAvailable(runningPort)) {
+                writeToLog("Port " + runningPort + " is still in use after stop");
+            }
+
+            synchronized (lock) {
+                proxyProcess = null;
+                processHandler = null;
+            }
+            leaderLock.release();
+            setStatus(ProxyMeSettings.ProxyStatus.INACTIVE);
+            closeLog();
+
+            notifyUser(
+                requester,
+                "Proxy server stopped",
+                NotificationType.INFORMATION
+            );
+        } catch (Exception e) {
+            notifyUser(
+                requester,
+                "Error stopping proxy: " + e.getMessage(),
+                NotificationType.ERROR
+            );
+            writeToLog("Error stopping proxy: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the proxy recorded in proxy.pid if it is not our own process
+     */
+    private void terminateOrphanedProxy() {
+        ProxyPidFile pidFile = ProxyPidFile.read(getProxyDirectory());
+        if (pidFile == null) {
+            return;
+        }
+        Process own = proxyProcess;
+        pidFile
+            .findLiveOwner()
+            .filter(handle -> own == null || handle.pid() != own.pid())
+            .ifPresent(handle -> {
+                writeToLog("Stopping orphaned proxy (PID " + handle.pid() + ")");
+                ProxyPidFile.terminateTree(handle, 5000);
+            });
+    }
+
+    /**
+     * Make sure the port can be bound, stopping our own orphaned proxy if it
+     * is the one holding it. A port held by anything else is left alone.
+     */
+    private boolean ensurePortAvailable(int port) {
+        if (isPortAvailable(port)) {
+            return true;
+        }
+
+        ProxyPidFile pidFile = ProxyPidFile.read(getProxyDirectory());
+        if (pidFile == null || pidFile.port != port) {
+            writeToLog("Port " + port + " is held by a process ProxyMe does not own");
+            return false;
+        }
+        terminateOrphanedProxy();
+
+        // The kernel may take a moment to release the listening socket
+        long deadline = System.currentTimeMillis() + 2000;
+        while (System.currentTimeMillis() < deadline) {
+            if (isPortAvailable(port)) {
+                return true;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return isPortAvailable(port);
+    }
+
+    /**
+     * Direct bind probe; cheaper and more precise than asking lsof
+     */
+    private static boolean isPortAvailable(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            // Match node, which ignores TIME_WAIT leftovers (but on Windows
+            // SO_REUSEADDR would let us bind over a live listener)
+            socket.setReuseAddress(!SystemInfo.isWindows);
+            socket.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restart proxy server.
+     *
+     * When the proxy is running under supervisor.js this is a blue/green
+     * reload: config files are regenerated, a new worker is started with
+     * them, and the old worker drains its open streams before exiting, so
+     * Rider never sees the port go away. Falls back to stop + launch when
+     * the proxy is not running or the reload is rejected.
+     */
+    public void restart(@NotNull Project project) {
+        writeToLog("=== Restarting Proxy ===");
+
+        // Run entire restart in background thread
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                regenerateConfiguration(project);
+
+                if (isFollower()) {
+                    // The leader's proxy reads the same config files
+                    if (!reloadInPlace(project)) {
+                        notifyUser(
+                            project,
+                            "Could not reload the proxy owned by another IDE instance",
+                            NotificationType.WARNING
+                        );
+                    }
+                    return;
+                }
+
+                if (isLocalProcessAlive()) {
+                    // Ship any updated proxy.js to the new worker
+                    extractProxyFiles();
+                    if (reloadInPlace(project)) {
+                        synchronized (lock) {
+                            attachedProjects.add(project);
+                        }
+                        return;
+                    }
+                    writeToLog(
+                        "Hot reload unavailable, falling back to cold restart"
+                    );
+                    stopProcess(project);
+                } else {
+                    writeToLog("Proxy was not running");
+                }
+
+                attach(project);
+            } catch (Exception e) {
+                writeToLog("CRITICAL ERROR during restart: " + e.getMessage());
+                e.printStackTrace();
+
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    notifyUser(
+                        project,
+                        "Restart failed: " +
+                            e.getMessage() +
+                            ". Try Stop then Start manually.",
+                        NotificationType.ERROR
+                    );
+                });
+            }
+        });
+    }
+
+    /**
+     * Regenerate models.json, .env and tuning.env from the current settings
+     */
+    private void regenerateConfiguration(@NotNull Project project) {
+        try {
+            ProxyMeModelsConfigService modelsConfigService =
+                ProxyMeModelsConfigService.getInstance();
+            modelsConfigService.generateModelsConfig(project);
+            writeToLog("Models configuration generated");
+        } catch (Exception e) {
+            writeToLog("Warning: " + e.getMessage());
+        }
+
+        // Regenerate .env with all API keys
+        ProxyMeSettings settings = ProxyMeSettings.getInstance(project);
+        try {
+            ProxyMeEnvFileService envService = new ProxyMeEnvFileService();
+            envService.generateEnvFile(project, settings);
+            writeToLog(".env file regenerated with all API keys");
+        } catch (Exception e) {
+            writeToLog(
+                "Warning: Could not regenerate .env: " + e.getMessage()
+            );
+        }
+
+        // The new worker picks up changed tuning settings from tuning.env
+        try {
+            writeTuningFile(settings);
+        } catch (IOException e) {
+            writeToLog(
+                "Warning: Could not write " + TUNING_FILE + ": " + e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Ask the running supervisor for a blue/green worker swap.
+     *
+     * @return true if the new worker is serving traffic
+     */
+    private boolean reloadInPlace(@NotNull Project project) {
+        ProxyMeSettings settings = ProxyMeSettings.getInstance(project);
+        String reloadUrl =
+            "http://" +
+            settings.proxyHost +
+            ":" +
+            settings.proxyPort +
+            "/admin/reload";
+
+        HttpURLConnection connection = null;
+        try {
+            long start = System.nanoTime();
+            connection = (HttpURLConnection) new URL(reloadUrl).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(2000);
+            connection.setReadTimeout(
+                Math.max(settings.startupTimeoutSeconds, 1) * 1000 + 5000
+            );
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != 200) {
+                writeToLog("Reload rejected with HTTP " + responseCode);
+                return false;
+            }
+
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(
+                System.nanoTime() - start
+            );
+            writeToLog("Blue/green reload completed in " + elapsed + "ms");
+            setStatus(ProxyMeSettings.ProxyStatus.ACTIVE);
+            notifyUser(
+                project,
+                "Proxy reloaded without downtime in " + elapsed + " ms",
+                NotificationType.INFORMATION
+            );
+            return true;
+        } catch (IOException e) {
+            writeToLog("Reload request failed: " + e.getMessage());
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Write to the shared proxy log file
+     */
+    void writeToLog(String message) {
+        synchronized (lock) {
+            File file = getLogFile();
+
+            try {
+                if (logWriter == null) {
+                    logWriter = new BufferedWriter(new FileWriter(file, true));
+                }
+
+                String timestamp = java.time.LocalDateTime.now().toString();
+                logWriter.write("[" + timestamp + "] " + message + "\n");
+                logWriter.flush();
+            } catch (IOException e) {
+                // Fail silently - don't want logging errors to break the app
+            }
+        }
+    }
+
+    /**
+     * Close log writer
+     */
+    private void closeLog() {
+        synchronized (lock) {
+            if (logWriter != null) {
+                try {
+                    logWriter.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+                logWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Get log file location (shared by all projects, like the process)
+     */
+    public File getLogFile() {
+        synchronized (lock) {
+            if (logFile == null) {
+                String userHome = System.getProperty("user.home");
+                File logsDir = new File(userHome, ".proxyme/logs");
+                logsDir.mkdirs();
+                logFile = new File(logsDir, "proxyme.log");
+            }
+            return logFile;
+        }
+    }
+
+    /**
+     * Get proxy directory
+     */
+    public File getProxyDirectory() {
+        synchronized (lock) {
+            if (proxyDirectory == null) {
+                String userHome = System.getProperty("user.home");
+                // SHARED proxy directory for all projects
+                proxyDirectory = new File(userHome, ".proxyme/proxy");
+            }
+            return proxyDirectory;
+        }
+    }
+
+    private static String getPluginVersion() {
+        IdeaPluginDescriptor plugin = PluginManagerCore.getPlugin(
+            PluginId.getId(PLUGIN_ID)
+        );
+        return plugin != null ? plugin.getVersion() : "unknown";
+    }
+
+    private Set<Project> snapshotAttached() {
+        synchronized (lock) {
+            return new LinkedHashSet<>(attachedProjects);
+        }
+    }
+
+    /**
+     * Records how long each launch phase took
+     */
+    private static final class StartupTimer {
+
+        private final long start = System.nanoTime();
+        private final StringBuilder phases = new StringBuilder();
+        private long lastMark = start;
+
+        void phase(String name) {
+            long now = System.nanoTime();
+            if (phases.length() > 0) {
+                phases.append(", ");
+            }
+            phases
+                .append(name)
+                .append('=')
+                .append(TimeUnit.NANOSECONDS.toMillis(now - lastMark))
+                .append("ms");
+            lastMark = now;
+        }
+
+        long totalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lastMark - start);
+        }
+
+        String summary() {
+            return phases + " (total " + totalMillis() + "ms)";
+        }
+    }
+
+    /**
+     * Show notification to the requesting project, or IDE-wide if none
+     */
+    private void notifyUser(
+        @Nullable Project project,
+        String message,
+        NotificationType type
+    ) {
+        Notification notification = new Notification(
+            "ProxyMe",
+            "ProxyMe",
+            message,
+            type
+        );
+        if (project != null && !project.isDisposed()) {
+            Notifications.Bus.notify(notification, project);
+        } else {
+            Notifications.Bus.notify(notification);
+        }
+    }
+}
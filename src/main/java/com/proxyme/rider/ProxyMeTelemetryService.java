@@ -0,0 +1,214 @@
+package com.proxyme.rider;
+
+import com.google.gson.Gson;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * ProxyMe Telemetry Service
+ * Samples what the proxy process costs while someone is looking.
+ *
+ * Every couple of seconds it combines an OS-level sample of the node process
+ * tree ({@link ProxyProcessSampler}) with the runtime stats the proxy
+ * exports on /metrics (event-loop lag, V8 heap), and keeps a short history
+ * for the tool window. Sampling only runs while at least one view has
+ * subscribed.
+ */
+@Service(Service.Level.APP)
+public final class ProxyMeTelemetryService {
+
+    private static final long SAMPLE_INTERVAL_SECONDS = 2;
+    // 3 minutes of history at the sample interval
+    private static final int HISTORY_SIZE = 90;
+    private static final int METRICS_TIMEOUT_MS = 1000;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Sample> history = new ArrayDeque<>();
+    private final ProxyProcessSampler sampler = new ProxyProcessSampler();
+
+    private ScheduledFuture<?> sampling;
+    private int subscribers;
+    private long sampledPid = -1;
+
+    public static ProxyMeTelemetryService getInstance() {
+        return ApplicationManager.getApplication().getService(
+            ProxyMeTelemetryService.class
+        );
+    }
+
+    /**
+     * One point in the telemetry history; -1 means "not available"
+     */
+    public static final class Sample {
+
+        public long timestamp;
+        public long pid = -1;
+        public int processCount = -1;
+        public double cpuPercent = -1;
+        public long rssBytes = -1;
+        public int threads = -1;
+        public int openFds = -1;
+        public int sockets = -1;
+        public double eventLoopLagP99Ms = -1;
+        public double eventLoopLagMaxMs = -1;
+        public long heapUsedBytes = -1;
+        public long heapTotalBytes = -1;
+    }
+
+    /**
+     * Start sampling on behalf of a view
+     */
+    public void subscribe() {
+        synchronized (lock) {
+            subscribers++;
+            if (sampling == null) {
+                sampling =
+                    AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                        this::sampleOnce,
+                        0,
+                        SAMPLE_INTERVAL_SECONDS,
+                        TimeUnit.SECONDS
+                    );
+            }
+        }
+    }
+
+    /**
+     * Stop sampling once the last view is gone
+     */
+    public void unsubscribe() {
+        synchronized (lock) {
+            subscribers = Math.max(0, subscribers - 1);
+            if (subscribers == 0 && sampling != null) {
+                sampling.cancel(false);
+                sampling = null;
+            }
+        }
+    }
+
+    /**
+     * Samples for the current proxy process, oldest first
+     */
+    public List<Sample> getHistory() {
+        synchronized (lock) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    @Nullable
+    public Sample getLatest() {
+        synchronized (lock) {
+            return history.peekLast();
+        }
+    }
+
+    private void sampleOnce() {
+        ProxyMeSupervisorService supervisor =
+            ProxyMeSupervisorService.getInstance();
+        ProcessHandle root = supervisor.getProxyProcessHandle();
+        if (root == null || !root.isAlive()) {
+            synchronized (lock) {
+                history.clear();
+                sampledPid = -1;
+            }
+            return;
+        }
+
+        Sample sample = new Sample();
+        sample.timestamp = System.currentTimeMillis();
+        sample.pid = root.pid();
+        sampler.sample(root, sample);
+        readRuntimeMetrics(supervisor.getProxyPort(), sample);
+
+        synchronized (lock) {
+            // A new process starts a new history
+            if (sampledPid != sample.pid) {
+                history.clear();
+                sampledPid = sample.pid;
+            }
+            history.addLast(sample);
+            while (history.size() > HISTORY_SIZE) {
+                history.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Event-loop and heap stats from the proxy's /metrics endpoint
+     */
+    private static void readRuntimeMetrics(int port, Sample into) {
+        if (port <= 0) {
+            return;
+        }
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(
+                "http://127.0.0.1:" + port + "/metrics"
+            ).openConnection();
+            connection.setConnectTimeout(METRICS_TIMEOUT_MS);
+            connection.setReadTimeout(METRICS_TIMEOUT_MS);
+            if (connection.getResponseCode() != 200) {
+                return;
+            }
+            RuntimeMetrics metrics;
+            try (
+                Reader reader = new InputStreamReader(
+                    connection.getInputStream(),
+                    StandardCharsets.UTF_8
+                )
+            ) {
+                metrics = new Gson().fromJson(reader, RuntimeMetrics.class);
+            }
+            if (metrics == null) {
+                return;
+            }
+            if (metrics.event_loop_lag != null) {
+                into.eventLoopLagP99Ms = metrics.event_loop_lag.p99_ms;
+                into.eventLoopLagMaxMs = metrics.event_loop_lag.max_ms;
+            }
+            if (metrics.heap != null) {
+                into.heapUsedBytes = metrics.heap.used_bytes;
+                into.heapTotalBytes = metrics.heap.total_bytes;
+            }
+        } catch (Exception e) {
+            // Busy or restarting; the OS-level numbers are still useful
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * /metrics response (only the fields the panel shows)
+     */
+    private static final class RuntimeMetrics {
+
+        EventLoopLag event_loop_lag;
+        Heap heap;
+
+        static final class EventLoopLag {
+
+            double p99_ms;
+            double max_ms;
+        }
+
+        static final class Heap {
+
+            long used_bytes;
+            long total_bytes;
+        }
+    }
+}
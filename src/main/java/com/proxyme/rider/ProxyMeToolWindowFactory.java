@@ -28,6 +28,8 @@ public class ProxyMeToolWindowFactory implements ToolWindowFactory {
             "",
             false
         );
+        // Stops the refresh timer and telemetry sampling with the content
+        content.setDisposer(toolWindowContent::dispose);
         toolWindow.getContentManager().addContent(content);
     }
 }
@@ -0,0 +1,355 @@
+package com.proxyme.rider;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.SystemInfo;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Node.js Toolchain Service
+ * Finds the node/npm executables once and remembers them.
+ *
+ * The resolved toolchain is kept in memory and persisted to
+ * ~/.proxyme/toolchain.json together with the mtimes of the node binary and
+ * the NVM versions directory. As long as those mtimes are unchanged, later
+ * launches (including after an IDE restart) reuse the result without
+ * spawning a single `node --version` process.
+ */
+@Service(Service.Level.APP)
+public final class ProxyMeToolchainService {
+
+    private static final Logger LOG = Logger.getInstance(
+        ProxyMeToolchainService.class
+    );
+
+    private static final String TOOLCHAIN_FILE = "toolchain.json";
+
+    // Minimum major version required by proxy.js (package.json "engines")
+    private static final int MIN_NODE_MAJOR = 18;
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile(
+        "v?(\\d+)\\.(\\d+)\\.(\\d+)"
+    );
+
+    private Toolchain cached;
+
+    public static ProxyMeToolchainService getInstance() {
+        return ApplicationManager.getApplication().getService(
+            ProxyMeToolchainService.class
+        );
+    }
+
+    /**
+     * Resolved node/npm pair
+     */
+    public static final class Toolchain {
+
+        public String nodePath;
+        public String npmPath;
+        public String version;
+        long nodeMtime;
+        long nvmMtime;
+
+        public String getNodeDirectory() {
+            return new File(nodePath).getParent();
+        }
+    }
+
+    /**
+     * Get the toolchain, probing only if nothing valid is cached.
+     *
+     * @return the toolchain, or null if Node.js is not installed
+     */
+    @Nullable
+    public synchronized Toolchain resolve() {
+        if (cached != null && isStillValid(cached)) {
+            return cached;
+        }
+
+        Toolchain persisted = readPersisted();
+        if (persisted != null && isStillValid(persisted)) {
+            cached = persisted;
+            return cached;
+        }
+
+        cached = probe();
+        if (cached != null) {
+            writePersisted(cached);
+            LOG.info(
+                "Resolved Node.js " + cached.version + " at " + cached.nodePath
+            );
+        } else {
+            LOG.warn("Node.js not found in any common location");
+        }
+        return cached;
+    }
+
+    /**
+     * Forget the cached toolchain (e.g. after Node.js was reinstalled)
+     */
+    public synchronized void invalidate() {
+        cached = null;
+        getToolchainFile().delete();
+    }
+
+    /**
+     * Cheap validity check: no process spawns, only file metadata
+     */
+    private boolean isStillValid(@NotNull Toolchain toolchain) {
+        if (toolchain.nodePath == null) {
+            return false;
+        }
+        File node = new File(toolchain.nodePath);
+        return (
+            node.isFile() &&
+            node.lastModified() == toolchain.nodeMtime &&
+            getNvmVersionsDir().lastModified() == toolchain.nvmMtime
+        );
+    }
+
+    /**
+     * Probe candidate locations and pick the best usable node binary
+     */
+    @Nullable
+    private Toolchain probe() {
+        Toolchain fallback = null;
+
+        for (File candidate : candidateNodeBinaries()) {
+            String version = readVersion(candidate);
+            if (version == null) {
+                continue;
+            }
+
+            Toolchain toolchain = new Toolchain();
+            toolchain.nodePath = candidate.getAbsolutePath();
+            toolchain.npmPath = findNpm(candidate);
+            toolchain.version = version;
+            toolchain.nodeMtime = candidate.lastModified();
+            toolchain.nvmMtime = getNvmVersionsDir().lastModified();
+
+            int[] parsed = parseVersion(version);
+            if (parsed != null && parsed[0] >= MIN_NODE_MAJOR) {
+                return toolchain;
+            }
+            if (fallback == null) {
+                fallback = toolchain;
+            }
+        }
+
+        if (fallback != null) {
+            LOG.warn(
+                "Only found Node.js " +
+                    fallback.version +
+                    "; proxy requires >= " +
+                    MIN_NODE_MAJOR
+            );
+        }
+        return fallback;
+    }
+
+    /**
+     * Candidate node executables in priority order (existing files only)
+     */
+    private List<File> candidateNodeBinaries() {
+        String exe = SystemInfo.isWindows ? "node.exe" : "node";
+        Set<File> candidates = new LinkedHashSet<>();
+
+        // PATH first, resolved without spawning a shell
+        String path = System.getenv("PATH");
+        if (path != null) {
+            for (String dir : path.split(Pattern.quote(File.pathSeparator))) {
+                if (!dir.isEmpty()) {
+                    candidates.add(new File(dir, exe));
+                }
+            }
+        }
+
+        // Common installation locations
+        candidates.add(new File("/opt/homebrew/bin/node")); // Homebrew on Apple Silicon
+        candidates.add(new File("/usr/local/bin/node")); // Homebrew on Intel Mac
+        candidates.add(new File("/usr/bin/node")); // System installation
+
+        // NVM: newest installed version first
+        File[] nvmVersions = getNvmVersionsDir().listFiles(File::isDirectory);
+        if (nvmVersions != null) {
+            Arrays.stream(nvmVersions)
+                .filter(dir -> parseVersion(dir.getName()) != null)
+                .sorted(
+                    Comparator.comparing(
+                        (File dir) -> parseVersion(dir.getName()),
+                        ProxyMeToolchainService::compareVersions
+                    ).reversed()
+                )
+                .forEach(dir -> candidates.add(new File(dir, "bin/" + exe)));
+        }
+
+        candidates.add(new File("/usr/local/opt/node/bin/node")); // Another Homebrew location
+
+        List<File> existing = new ArrayList<>();
+        for (File candidate : candidates) {
+            if (candidate.isFile() && candidate.canExecute()) {
+                existing.add(candidate);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Run `node --version` (only during a probe). The output is read only
+     * after the process exits, so a hung shim can't block past the timeout;
+     * a version string is far below the pipe buffer size.
+     */
+    @Nullable
+    private static String readVersion(File node) {
+        try {
+            Process process = new ProcessBuilder(
+                node.getAbsolutePath(),
+                "--version"
+            )
+                .redirectErrorStream(true)
+                .start();
+            process.getOutputStream().close();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return null;
+            }
+            String line;
+            try (
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream())
+                )
+            ) {
+                line = reader.readLine();
+            }
+            if (process.exitValue() != 0 || line == null) {
+                return null;
+            }
+            return parseVersion(line) != null ? line.trim() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * npm lives next to node in every supported layout; fall back to PATH
+     */
+    private static String findNpm(File node) {
+        String name = SystemInfo.isWindows ? "npm.cmd" : "npm";
+        File npm = new File(node.getParentFile(), name);
+        return npm.exists() ? npm.getAbsolutePath() : "npm";
+    }
+
+    @Nullable
+    static int[] parseVersion(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = VERSION_PATTERN.matcher(text.trim());
+        if (!matcher.lookingAt()) {
+            return null;
+        }
+        return new int[] {
+            Integer.parseInt(matcher.group(1)),
+            Integer.parseInt(matcher.group(2)),
+            Integer.parseInt(matcher.group(3)),
+        };
+    }
+
+    private static int compareVersions(int[] a, int[] b) {
+        for (int i = 0; i < 3; i++) {
+            int cmp = Integer.compare(a[i], b[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Put the toolchain's bin directory at the front of a child's PATH
+     */
+    public static void prependToPath(
+        @NotNull Toolchain toolchain,
+        @NotNull Map<String, String> env
+    ) {
+        String nodeDir = toolchain.getNodeDirectory();
+        String currentPath = env.get("PATH");
+        if (currentPath != null) {
+            env.put("PATH", nodeDir + File.pathSeparator + currentPath);
+        } else {
+            env.put("PATH", nodeDir);
+        }
+    }
+
+    private static File getNvmVersionsDir() {
+        return new File(
+            System.getProperty("user.home"),
+            ".nvm/versions/node"
+        );
+    }
+
+    private static File getToolchainFile() {
+        return new File(
+            System.getProperty("user.home"),
+            ".proxyme/" + TOOLCHAIN_FILE
+        );
+    }
+
+    @Nullable
+    private static Toolchain readPersisted() {
+        File file = getToolchainFile();
+        if (!file.isFile()) {
+            return null;
+        }
+        try (
+            Reader reader = Files.newBufferedReader(
+                file.toPath(),
+                StandardCharsets.UTF_8
+            )
+        ) {
+            return new Gson().fromJson(reader, Toolchain.class);
+        } catch (Exception e) {
+            LOG.warn("Ignoring unreadable " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writePersisted(@NotNull Toolchain toolchain) {
+        File file = getToolchainFile();
+        file.getParentFile().mkdirs();
+        try (
+            Writer writer = Files.newBufferedWriter(
+                file.toPath(),
+                StandardCharsets.UTF_8
+            )
+        ) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(
+                toolchain,
+                writer
+            );
+        } catch (Exception e) {
+            LOG.warn("Could not persist toolchain: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.proxyme.rider;
+
+import com.google.gson.Gson;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * proxy.pid written by supervisor.js into the proxy directory.
+ *
+ * The file holds the supervisor's PID, its start time and its port. A PID
+ * is only trusted if the live process with that PID started at the recorded
+ * time, so a recycled PID belonging to some unrelated program is never
+ * killed. Termination goes through {@link ProcessHandle} for the whole tree
+ * (supervisor plus workers) instead of lsof/kill.
+ */
+final class ProxyPidFile {
+
+    private static final Logger LOG = Logger.getInstance(ProxyPidFile.class);
+
+    static final String FILE_NAME = "proxy.pid";
+
+    // ProcessHandle start times are tick-granular; node's is derived from uptime
+    private static final long START_TIME_TOLERANCE_MS = 2000;
+
+    long pid;
+    long started_at;
+    int port;
+
+    /**
+     * Read proxy.pid from the proxy directory, or null if absent/unreadable
+     */
+    @Nullable
+    static ProxyPidFile read(@NotNull File proxyDirectory) {
+        File file = new File(proxyDirectory, FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (
+            Reader reader = Files.newBufferedReader(
+                file.toPath(),
+                StandardCharsets.UTF_8
+            )
+        ) {
+            ProxyPidFile record = new Gson().fromJson(reader, ProxyPidFile.class);
+            return record != null && record.pid > 0 ? record : null;
+        } catch (Exception e) {
+            LOG.warn("Ignoring unreadable " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The live process this file describes, if it is still the same process
+     */
+    Optional<ProcessHandle> findLiveOwner() {
+        return ProcessHandle.of(pid).filter(this::isSameProcess);
+    }
+
+    private boolean isSameProcess(ProcessHandle handle) {
+        if (!handle.isAlive()) {
+            return false;
+        }
+        Optional<Instant> start = handle.info().startInstant();
+        if (start.isPresent()) {
+            return (
+                Math.abs(start.get().toEpochMilli() - started_at) <=
+                START_TIME_TOLERANCE_MS
+            );
+        }
+        // No start time on this platform; fall back to the command name
+        return handle.info().command().map(c -> c.contains("node")).orElse(false);
+    }
+
+    /**
+     * Stop a process and all of its descendants: SIGTERM first, then a
+     * forced kill for anything still alive after the grace period.
+     *
+     * @return true if the whole tree is gone
+     */
+    static boolean terminateTree(@NotNull ProcessHandle root, long graceMillis) {
+        // Capture the tree up front; children are re-parented once root dies
+        List<ProcessHandle> tree = new ArrayList<>();
+        root.descendants().forEach(tree::add);
+        tree.add(root);
+
+        for (ProcessHandle handle : tree) {
+            handle.destroy();
+        }
+        if (awaitExit(tree, graceMillis)) {
+            return true;
+        }
+
+        for (ProcessHandle handle : tree) {
+            if (handle.isAlive()) {
+                handle.destroyForcibly();
+            }
+        }
+        return awaitExit(tree, 2000);
+    }
+
+    private static boolean awaitExit(List<ProcessHandle> tree, long millis) {
+        CompletableFuture<?>[] exits = tree
+            .stream()
+            .map(ProcessHandle::onExit)
+            .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(exits).get(millis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            return tree.stream().noneMatch(ProcessHandle::isAlive);
+        }
+    }
+}
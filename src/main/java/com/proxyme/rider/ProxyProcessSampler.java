@@ -0,0 +1,115 @@
+package com.proxyme.rider;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * OS-level sampling of the proxy process tree (node supervisor + workers).
+ *
+ * CPU time comes from {@link ProcessHandle.Info#totalCpuDuration()}, which
+ * works on every platform; RSS, threads, open fds and sockets are read from
+ * /proc/&lt;pid&gt; and are reported as -1 where /proc is not available.
+ */
+final class ProxyProcessSampler {
+
+    private static final Path PROC = Paths.get("/proc");
+
+    private long previousRootPid = -1;
+    private long previousCpuNanos;
+    private long previousWallNanos;
+
+    /**
+     * Sample the process and all of its descendants into the given sample
+     */
+    void sample(ProcessHandle root, ProxyMeTelemetryService.Sample into) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        tree.add(root);
+        root.descendants().forEach(tree::add);
+        into.processCount = tree.size();
+
+        // CPU% over the interval since the previous sample (100 = one core)
+        long cpuNanos = 0;
+        for (ProcessHandle handle : tree) {
+            cpuNanos += handle
+                .info()
+                .totalCpuDuration()
+                .map(Duration::toNanos)
+                .orElse(0L);
+        }
+        long wallNanos = System.nanoTime();
+        if (previousRootPid == root.pid() && wallNanos > previousWallNanos) {
+            long cpuDelta = Math.max(0, cpuNanos - previousCpuNanos);
+            into.cpuPercent =
+                (100.0 * cpuDelta) / (wallNanos - previousWallNanos);
+        }
+        previousRootPid = root.pid();
+        previousCpuNanos = cpuNanos;
+        previousWallNanos = wallNanos;
+
+        if (!Files.isDirectory(PROC)) {
+            return;
+        }
+
+        long rssKb = 0;
+        int threads = 0;
+        int fds = 0;
+        int sockets = 0;
+        for (ProcessHandle handle : tree) {
+            Path dir = PROC.resolve(Long.toString(handle.pid()));
+            try {
+                for (String line : Files.readAllLines(
+                    dir.resolve("status"),
+                    StandardCharsets.UTF_8
+                )) {
+                    if (line.startsWith("VmRSS:")) {
+                        rssKb += parseKb(line);
+                    } else if (line.startsWith("Threads:")) {
+                        threads += Integer.parseInt(
+                            line.substring("Threads:".length()).trim()
+                        );
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Process exited between listing and reading
+                continue;
+            }
+
+            try (Stream<Path> entries = Files.list(dir.resolve("fd"))) {
+                for (Path fd : (Iterable<Path>) entries::iterator) {
+                    fds++;
+                    try {
+                        if (
+                            Files.readSymbolicLink(fd)
+                                .toString()
+                                .startsWith("socket:")
+                        ) {
+                            sockets++;
+                        }
+                    } catch (IOException e) {
+                        // fd closed while listing
+                    }
+                }
+            } catch (IOException e) {
+                // Not permitted or gone; leave fds as counted so far
+            }
+        }
+        into.rssBytes = rssKb * 1024;
+        into.threads = threads;
+        into.openFds = fds;
+        into.sockets = sockets;
+    }
+
+    private static long parseKb(String line) {
+        // "VmRSS:	   48212 kB"
+        String value = line.substring(line.indexOf(':') + 1).trim();
+        int space = value.indexOf(' ');
+        return Long.parseLong(space > 0 ? value.substring(0, space) : value);
+    }
+}
@@ -0,0 +1,173 @@
+package com.proxyme.rider;
+
+import com.google.gson.Gson;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readiness probe for a freshly spawned proxy process.
+ *
+ * Replaces the old fixed Thread.sleep(2000) + single health check. The probe
+ * watches the child's stdout for the ready marker printed by proxy.js once the
+ * HTTP server is listening, and polls /health with exponential backoff until
+ * the proxy answers or the configured deadline expires.
+ */
+final class ProxyReadinessProbe {
+
+    /** Line prefix printed by proxy.js from its listen() callback. */
+    static final String READY_MARKER = "PROXYME_READY";
+
+    private static final long INITIAL_BACKOFF_MS = 50;
+    private static final long MAX_BACKOFF_MS = 1000;
+    private static final int MAX_HEALTH_TIMEOUT_MS = 2000;
+
+    /**
+     * What a /health answer says about a running proxy
+     */
+    enum Health {
+        HEALTHY,
+        DEGRADED, // Answering, but some provider endpoint's circuit is open
+        UNREACHABLE,
+    }
+
+    enum Result {
+        READY, // /health answered 200
+        TIMED_OUT, // Deadline expired while the process was still alive
+        EXITED, // Process died before becoming ready
+    }
+
+    private final CountDownLatch listening = new CountDownLatch(1);
+
+    /**
+     * Feed process output to the probe (called from the output listener).
+     */
+    void onOutput(String text) {
+        if (text != null && text.contains(READY_MARKER)) {
+            listening.countDown();
+        }
+    }
+
+    boolean sawListeningMarker() {
+        return listening.getCount() == 0;
+    }
+
+    /**
+     * Block until the proxy is ready, has exited, or the timeout expires.
+     */
+    Result awaitReady(Process process, String healthUrl, long timeoutMs)
+        throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+            timeoutMs
+        );
+        long backoff = INITIAL_BACKOFF_MS;
+        boolean markerSeen = false;
+
+        while (true) {
+            if (process == null || !process.isAlive()) {
+                return Result.EXITED;
+            }
+
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(
+                deadline - System.nanoTime()
+            );
+            if (remainingMs <= 0) {
+                return Result.TIMED_OUT;
+            }
+
+            int healthTimeout = (int) Math.min(
+                remainingMs,
+                MAX_HEALTH_TIMEOUT_MS
+            );
+            if (checkHealth(healthUrl, healthTimeout)) {
+                return Result.READY;
+            }
+
+            remainingMs = TimeUnit.NANOSECONDS.toMillis(
+                deadline - System.nanoTime()
+            );
+            if (remainingMs <= 0) {
+                return Result.TIMED_OUT;
+            }
+
+            // Sleep for the backoff interval, but wake up early as soon as
+            // the process reports that it is listening
+            listening.await(Math.min(backoff, remainingMs), TimeUnit.MILLISECONDS);
+
+            if (!markerSeen && sawListeningMarker()) {
+                markerSeen = true;
+                backoff = INITIAL_BACKOFF_MS;
+            } else {
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Single GET against the health endpoint.
+     */
+    static boolean checkHealth(String healthUrl, int timeoutMs) {
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(healthUrl);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            return connection.getResponseCode() == 200;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Single GET against the health endpoint, reading the reported status.
+     */
+    static Health checkHealthState(String healthUrl, int timeoutMs) {
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(healthUrl);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            if (connection.getResponseCode() != 200) {
+                return Health.UNREACHABLE;
+            }
+            HealthBody body;
+            try (
+                Reader reader = new InputStreamReader(
+                    connection.getInputStream(),
+                    StandardCharsets.UTF_8
+                )
+            ) {
+                body = new Gson().fromJson(reader, HealthBody.class);
+            }
+            return body != null && "degraded".equals(body.status)
+                ? Health.DEGRADED
+                : Health.HEALTHY;
+        } catch (Exception e) {
+            return Health.UNREACHABLE;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * /health response (only the field the plugin reads)
+     */
+    private static final class HealthBody {
+
+        String status;
+    }
+}
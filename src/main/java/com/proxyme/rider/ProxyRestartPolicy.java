@@ -0,0 +1,72 @@
+package com.proxyme.rider;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Crash-restart policy for the proxy process.
+ *
+ * Each unexpected exit is restarted after a capped exponential backoff
+ * (1s, 2s, 4s ... 30s). A process that stayed up for a while before dying
+ * starts again from the shortest delay. Too many crashes inside a sliding
+ * window is treated as a crash loop and ends automatic restarts, so a broken
+ * config or an occupied port doesn't respawn node forever.
+ */
+final class ProxyRestartPolicy {
+
+    static final long INITIAL_DELAY_MS = 1000;
+    static final long MAX_DELAY_MS = 30_000;
+    // Uptime after which a crash no longer counts as part of a streak
+    static final long STABLE_UPTIME_MS = 60_000;
+    static final long CRASH_WINDOW_MS = 120_000;
+    static final int MAX_CRASHES_IN_WINDOW = 5;
+
+    private final Deque<Long> recentCrashes = new ArrayDeque<>();
+    private int consecutiveCrashes;
+
+    /**
+     * Record a crash.
+     *
+     * @param uptimeMs how long the crashed process had been running
+     * @return delay before restarting, or -1 if this is a crash loop
+     */
+    synchronized long onCrash(long uptimeMs) {
+        long now = System.currentTimeMillis();
+        if (uptimeMs >= STABLE_UPTIME_MS) {
+            consecutiveCrashes = 0;
+        }
+
+        recentCrashes.addLast(now);
+        while (
+            !recentCrashes.isEmpty() &&
+            now - recentCrashes.peekFirst() > CRASH_WINDOW_MS
+        ) {
+            recentCrashes.removeFirst();
+        }
+        if (recentCrashes.size() >= MAX_CRASHES_IN_WINDOW) {
+            return -1;
+        }
+
+        long delay = Math.min(
+            MAX_DELAY_MS,
+            INITIAL_DELAY_MS << Math.min(consecutiveCrashes, 16)
+        );
+        consecutiveCrashes++;
+        return delay;
+    }
+
+    /**
+     * Crashes counted in the current window
+     */
+    synchronized int recentCrashCount() {
+        return recentCrashes.size();
+    }
+
+    /**
+     * Forget crash history (after a deliberate stop or giving up)
+     */
+    synchronized void reset() {
+        recentCrashes.clear();
+        consecutiveCrashes = 0;
+    }
+}
@@ -0,0 +1,238 @@
+package com.proxyme.rider;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Incremental extraction of the bundled proxy runtime.
+ *
+ * The build writes proxy/manifest.json (see generateProxyManifest in
+ * build.gradle.kts) with the SHA-256 and size of every file under
+ * resources/proxy. A copy of the manifest that was last extracted is kept in
+ * the target directory; only files whose hash differs (or that are missing
+ * on disk) are rewritten, each through a temp file and an atomic rename so a
+ * running proxy never sees a half-written script. An unchanged plugin
+ * extracts with zero file writes. A build without the manifest is broken
+ * (it can't know which files proxy.js requires) and fails extraction.
+ */
+public final class ProxyRuntimeExtractor {
+
+    private static final Logger LOG = Logger.getInstance(
+        ProxyRuntimeExtractor.class
+    );
+
+    private static final String RESOURCE_ROOT = "proxy/";
+    private static final String BUNDLED_MANIFEST = "manifest.json";
+    private static final String EXTRACTED_MANIFEST = ".manifest.json";
+
+    private ProxyRuntimeExtractor() {}
+
+    /**
+     * Bring targetDir up to date with the runtime bundled in the plugin.
+     *
+     * @return number of files written (0 when already up to date)
+     */
+    public static int extract(
+        @NotNull ClassLoader classLoader,
+        @NotNull File targetDir
+    ) throws IOException {
+        targetDir.mkdirs();
+
+        Manifest bundled = readBundledManifest(classLoader);
+        Manifest extracted = readManifest(
+            new File(targetDir, EXTRACTED_MANIFEST).toPath()
+        );
+
+        int written = 0;
+        for (Map.Entry<String, Entry> file : bundled.files.entrySet()) {
+            String name = file.getKey();
+            Entry wanted = file.getValue();
+            Entry previous = extracted != null
+                ? extracted.files.get(name)
+                : null;
+            File target = new File(targetDir, name);
+
+            if (
+                previous != null &&
+                previous.sha256.equals(wanted.sha256) &&
+                target.isFile() &&
+                target.length() == wanted.size
+            ) {
+                continue;
+            }
+
+            publish(classLoader, name, wanted, target);
+            written++;
+        }
+
+        // Remove files an older plugin version extracted but no longer ships
+        if (extracted != null) {
+            for (String name : extracted.files.keySet()) {
+                if (!bundled.files.containsKey(name)) {
+                    Files.deleteIfExists(new File(targetDir, name).toPath());
+                    written++;
+                }
+            }
+        }
+
+        if (written > 0 || extracted == null) {
+            writeManifest(bundled, targetDir);
+            LOG.info("Extracted " + written + " proxy file(s) to " + targetDir);
+        }
+        return written;
+    }
+
+    /**
+     * Copy one resource to a temp file beside the target, verify, then rename
+     */
+    private static void publish(
+        ClassLoader classLoader,
+        String name,
+        Entry wanted,
+        File target
+    ) throws IOException {
+        target.getParentFile().mkdirs();
+        Path temp = new File(
+            target.getParentFile(),
+            "." + target.getName() + ".tmp"
+        ).toPath();
+
+        String actual;
+        try (InputStream in = openResource(classLoader, name)) {
+            DigestInputStream digestIn = new DigestInputStream(in, sha256());
+            Files.copy(digestIn, temp, StandardCopyOption.REPLACE_EXISTING);
+            actual = HexFormat.of().formatHex(
+                digestIn.getMessageDigest().digest()
+            );
+        }
+
+        if (!actual.equals(wanted.sha256)) {
+            Files.deleteIfExists(temp);
+            throw new IOException(
+                "Bundled " + name + " does not match its manifest hash"
+            );
+        }
+
+        Files.move(
+            temp,
+            target.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    private static Manifest readBundledManifest(ClassLoader classLoader)
+        throws IOException {
+        try (
+            InputStream in = classLoader.getResourceAsStream(
+                RESOURCE_ROOT + BUNDLED_MANIFEST
+            )
+        ) {
+            if (in != null) {
+                try (
+                    Reader reader = new InputStreamReader(
+                        in,
+                        StandardCharsets.UTF_8
+                    )
+                ) {
+                    Manifest manifest = new Gson().fromJson(
+                        reader,
+                        Manifest.class
+                    );
+                    if (manifest != null && manifest.files != null) {
+                        return manifest;
+                    }
+                }
+            }
+        }
+
+        throw new IOException(
+            "Bundled proxy/" +
+                BUNDLED_MANIFEST +
+                " is missing or unreadable; rebuild the plugin so " +
+                "generateProxyManifest runs"
+        );
+    }
+
+    @Nullable
+    private static Manifest readManifest(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            Manifest manifest = new Gson().fromJson(reader, Manifest.class);
+            return manifest != null && manifest.files != null ? manifest : null;
+        } catch (Exception e) {
+            LOG.warn("Ignoring unreadable " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeManifest(Manifest manifest, File targetDir)
+        throws IOException {
+        Path target = new File(targetDir, EXTRACTED_MANIFEST).toPath();
+        Path temp = new File(targetDir, EXTRACTED_MANIFEST + ".tmp").toPath();
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(
+                manifest,
+                writer
+            );
+        }
+        Files.move(
+            temp,
+            target,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    private static InputStream openResource(ClassLoader classLoader, String name)
+        throws IOException {
+        InputStream in = classLoader.getResourceAsStream(RESOURCE_ROOT + name);
+        if (in == null) {
+            throw new IOException("Missing bundled resource: proxy/" + name);
+        }
+        return in;
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * manifest.json contents
+     */
+    static final class Manifest {
+
+        Map<String, Entry> files = new TreeMap<>();
+    }
+
+    static final class Entry {
+
+        String sha256;
+        long size;
+    }
+}
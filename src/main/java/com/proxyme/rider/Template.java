@@ -147,6 +147,14 @@ public class Template {
                         model.temperature,
                         model.stream
                     );
+                modelCopy.maxRetries = model.maxRetries;
+                modelCopy.hedge = model.hedge;
+                modelCopy.hedgePercentile = model.hedgePercentile;
+                modelCopy.cacheResponses = model.cacheResponses;
+                modelCopy.cacheMaxTemperature = model.cacheMaxTemperature;
+                modelCopy.fallbacks = ProxyMeSettings.FallbackTarget.copyAll(
+                    model.fallbacks
+                );
                 // Copy custom headers and body params
                 if (model.customHeaders != null) {
                     modelCopy.customHeaders = new java.util.HashMap<>(
@@ -1,6 +1,9 @@
 package com.proxyme.rider.ui;
 
 import com.intellij.openapi.project.Project;
+import com.proxyme.rider.ProxyDependencyBundle;
+import com.proxyme.rider.ProxyMeToolchainService;
+import com.proxyme.rider.ProxyRuntimeExtractor;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBScrollPane;
@@ -9,7 +12,6 @@ import java.awt.*;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.util.Map;
 import javax.swing.*;
 
 /**
@@ -55,7 +57,7 @@ public class DependencyInstallPanel extends JPanel {
                 "✓ dotenv - Environment configuration<br>" +
                 "✓ cors - Cross-origin resource sharing<br>" +
                 "✓ Plus ~15-20 dependency packages<br><br>" +
-                "<b>Size:</b> ~30-50 MB | <b>Time:</b> 30-60 seconds" +
+                "<b>Size:</b> ~30-50 MB | <b>Time:</b> under a second (bundled), 30-60 seconds via npm" +
                 "</div></html>"
         );
 
@@ -132,13 +134,7 @@ public class DependencyInstallPanel extends JPanel {
 
     private void checkIfAlreadyInstalled() {
         String userHome = System.getProperty("user.home");
-        String projectName = project
-            .getName()
-            .replaceAll("[^a-zA-Z0-9.-]", "_");
-        File nodeModules = new File(
-            userHome,
-            ".proxyme/proxy-" + projectName + "/node_modules"
-        );
+        File nodeModules = new File(userHome, ".proxyme/proxy/node_modules");
 
         if (nodeModules.exists() && nodeModules.isDirectory()) {
             File[] contents = nodeModules.listFiles();
@@ -192,15 +188,22 @@ public class DependencyInstallPanel extends JPanel {
                 try {
                     // Step 1: Find Node.js
                     publish("Step 1/4: Checking Node.js installation...\n");
-                    String nodePath = findNodePath();
-                    if (nodePath == null) {
+                    ProxyMeToolchainService.Toolchain toolchain =
+                        ProxyMeToolchainService.getInstance().resolve();
+                    if (toolchain == null) {
                         publish(
                             "ERROR: Node.js not found!\n" +
                                 "Please install Node.js from https://nodejs.org/\n"
                         );
                         return false;
                     }
-                    publish("✓ Found Node.js at: " + nodePath + "\n\n");
+                    publish(
+                        "✓ Found Node.js " +
+                            toolchain.version +
+                            " at: " +
+                            toolchain.nodePath +
+                            "\n\n"
+                    );
 
                     // Step 2: Create proxy directory (SHARED for all projects)
                     publish("Step 2/4: Creating shared proxy directory...\n");
@@ -220,37 +223,62 @@ public class DependencyInstallPanel extends JPanel {
 
                     // Step 3: Extract proxy files
                     publish("Step 3/4: Extracting proxy files...\n");
-                    extractProxyFiles(proxyDir);
+                    ProxyRuntimeExtractor.extract(
+                        getClass().getClassLoader(),
+                        proxyDir
+                    );
                     publish(
                         "✓ Proxy files extracted (proxy.js, package.json)\n\n"
                     );
 
-                    // Step 4: Run npm install
+                    // Step 4: Unpack the bundled packages (no network needed)
                     publish("Step 4/4: Installing npm packages...\n");
+                    try {
+                        if (
+                            ProxyDependencyBundle.install(
+                                getClass().getClassLoader(),
+                                proxyDir,
+                                true
+                            )
+                        ) {
+                            publish(
+                                "✓ Installed bundled packages (offline)\n" +
+                                    "\nAll dependencies are now installed.\n" +
+                                    "You can now launch the proxy from the settings panel.\n"
+                            );
+                            return true;
+                        }
+                    } catch (Exception e) {
+                        publish(
+                            "  Bundled packages could not be unpacked (" +
+                                e.getMessage() +
+                                "), falling back to npm\n"
+                        );
+                    }
+
+                    // Fallback: run npm install
                     publish(
                         "This may take 30-60 seconds depending on your internet speed.\n\n"
                     );
 
-                    String npmPath = nodePath.replace("/node", "/npm");
-                    if (!new File(npmPath).exists()) {
-                        npmPath = "npm";
-                    }
-
-                    ProcessBuilder pb = new ProcessBuilder(npmPath, "install");
+                    ProcessBuilder pb = new ProcessBuilder(
+                        toolchain.npmPath,
+                        "install"
+                    );
                     pb.directory(proxyDir);
                     pb.redirectErrorStream(true);
 
                     // Add Node.js bin directory to PATH so npm can find node
-                    String nodeDir = new File(nodePath).getParent();
-                    Map<String, String> env = pb.environment();
-                    String currentPath = env.get("PATH");
-                    if (currentPath != null) {
-                        env.put("PATH", nodeDir + ":" + currentPath);
-                    } else {
-                        env.put("PATH", nodeDir);
-                    }
+                    ProxyMeToolchainService.prependToPath(
+                        toolchain,
+                        pb.environment()
+                    );
 
-                    publish("  Using Node.js from: " + nodeDir + "\n");
+                    publish(
+                        "  Using Node.js from: " +
+                            toolchain.getNodeDirectory() +
+                            "\n"
+                    );
 
                     installProcess = pb.start();
 
@@ -390,56 +418,6 @@ public class DependencyInstallPanel extends JPanel {
         }
     }
 
-    private String findNodePath() {
-        String[] possiblePaths = {
-            "node",
-            "/opt/homebrew/bin/node",
-            "/usr/local/bin/node",
-            "/usr/bin/node",
-            System.getProperty("user.home") + "/.nvm/versions/node/*/bin/node",
-            "/usr/local/opt/node/bin/node",
-        };
-
-        for (String path : possiblePaths) {
-            try {
-                Process process = new ProcessBuilder(path, "--version").start();
-                int exitCode = process.waitFor();
-                if (exitCode == 0) {
-                    return path;
-                }
-            } catch (Exception e) {
-                // Try next path
-            }
-        }
-        return null;
-    }
-
-    private void extractProxyFiles(File proxyDir) throws Exception {
-        ClassLoader classLoader = getClass().getClassLoader();
-        String[] filesToExtract = {
-            "proxy.js",
-            "package.json",
-            "package-lock.json",
-            "README.md",
-            ".env.template",
-        };
-
-        for (String fileName : filesToExtract) {
-            try (
-                var in = classLoader.getResourceAsStream("proxy/" + fileName)
-            ) {
-                if (in != null) {
-                    File targetFile = new File(proxyDir, fileName);
-                    java.nio.file.Files.copy(
-                        in,
-                        targetFile.toPath(),
-                        java.nio.file.StandardCopyOption.REPLACE_EXISTING
-                    );
-                }
-            }
-        }
-    }
-
     private void appendLog(String text) {
         SwingUtilities.invokeLater(() -> {
             logArea.append(text);
@@ -3,7 +3,9 @@ package com.proxyme.rider.ui;
 import com.intellij.ui.table.JBTable;
 import com.proxyme.rider.ProxyMeSettings;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
@@ -22,6 +24,11 @@ public class ModelConfigPanel {
     private JButton removeModelButton;
     private JButton editModelButton;
 
+    // Per-row settings that have no table column (retry budget, fallbacks),
+    // kept in step with the table rows
+    private final List<ProxyMeSettings.ModelConfig> rowSettings =
+        new ArrayList<>();
+
     private final String[] columnNames = {
         "Enabled",
         "Model Name",
@@ -114,7 +121,7 @@ public class ModelConfigPanel {
 
         if (dialog.isConfirmed()) {
             ProxyMeSettings.ModelConfig config = dialog.getModelConfig();
-            tableModel.addRow(createTableRow(config));
+            addRow(config);
         }
     }
 
@@ -148,6 +155,7 @@ public class ModelConfigPanel {
         }
 
         config.stream = (Boolean) tableModel.getValueAt(selectedRow, 6);
+        copyRowSettings(rowSettings.get(selectedRow), config);
 
         ModelEditDialog dialog = new ModelEditDialog(
             null,
@@ -159,6 +167,7 @@ public class ModelConfigPanel {
         if (dialog.isConfirmed()) {
             ProxyMeSettings.ModelConfig updated = dialog.getModelConfig();
             updateTableRow(selectedRow, updated);
+            rowSettings.set(selectedRow, updated);
         }
     }
 
@@ -183,9 +192,50 @@ public class ModelConfigPanel {
 
         if (confirm == JOptionPane.YES_OPTION) {
             tableModel.removeRow(selectedRow);
+            rowSettings.remove(selectedRow);
         }
     }
 
+    private void addRow(ProxyMeSettings.ModelConfig config) {
+        tableModel.addRow(createTableRow(config));
+        rowSettings.add(config);
+    }
+
+    private static void copyRowSettings(
+        ProxyMeSettings.ModelConfig from,
+        ProxyMeSettings.ModelConfig to
+    ) {
+        to.maxRetries = from.maxRetries;
+        to.hedge = from.hedge;
+        to.hedgePercentile = from.hedgePercentile;
+        to.cacheResponses = from.cacheResponses;
+        to.cacheMaxTemperature = from.cacheMaxTemperature;
+        to.fallbacks = ProxyMeSettings.FallbackTarget.copyAll(from.fallbacks);
+    }
+
+    private static boolean sameFallbacks(
+        List<ProxyMeSettings.FallbackTarget> a,
+        List<ProxyMeSettings.FallbackTarget> b
+    ) {
+        List<ProxyMeSettings.FallbackTarget> left = a != null ? a : List.of();
+        List<ProxyMeSettings.FallbackTarget> right = b != null ? b : List.of();
+        if (left.size() != right.size()) {
+            return false;
+        }
+        for (int i = 0; i < left.size(); i++) {
+            ProxyMeSettings.FallbackTarget x = left.get(i);
+            ProxyMeSettings.FallbackTarget y = right.get(i);
+            if (
+                !Objects.equals(x.apiProvider, y.apiProvider) ||
+                !Objects.equals(x.apiEndpoint, y.apiEndpoint) ||
+                !Objects.equals(x.modelName, y.modelName)
+            ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Object[] createTableRow(ProxyMeSettings.ModelConfig config) {
         return new Object[] {
             config.enabled,
@@ -261,6 +311,17 @@ public class ModelConfigPanel {
             if (
                 model.stream != (Boolean) tableModel.getValueAt(i, 6)
             ) return true;
+
+            // Check settings without a column
+            ProxyMeSettings.ModelConfig row = rowSettings.get(i);
+            if (model.maxRetries != row.maxRetries) return true;
+            if (model.hedge != row.hedge) return true;
+            if (model.hedgePercentile != row.hedgePercentile) return true;
+            if (model.cacheResponses != row.cacheResponses) return true;
+            if (
+                model.cacheMaxTemperature != row.cacheMaxTemperature
+            ) return true;
+            if (!sameFallbacks(model.fallbacks, row.fallbacks)) return true;
         }
 
         return false;
@@ -289,6 +350,7 @@ public class ModelConfigPanel {
             }
 
             model.stream = (Boolean) tableModel.getValueAt(i, 6);
+            copyRowSettings(rowSettings.get(i), model);
 
             models.add(model);
         }
@@ -296,6 +358,7 @@ public class ModelConfigPanel {
 
     public void reset(List<ProxyMeSettings.ModelConfig> models) {
         tableModel.setRowCount(0);
+        rowSettings.clear();
 
         if (models == null || models.isEmpty()) {
             // Add default models if empty
@@ -304,7 +367,10 @@ public class ModelConfigPanel {
         }
 
         for (ProxyMeSettings.ModelConfig model : models) {
+            ProxyMeSettings.ModelConfig row = new ProxyMeSettings.ModelConfig();
+            copyRowSettings(model, row);
             tableModel.addRow(createTableRow(model));
+            rowSettings.add(row);
         }
     }
 
@@ -321,7 +387,7 @@ public class ModelConfigPanel {
         deepseekChat.temperature = 0.7;
         deepseekChat.stream = true;
 
-        tableModel.addRow(createTableRow(deepseekChat));
+        addRow(deepseekChat);
     }
 
     /**
@@ -5,7 +5,9 @@ import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBTextField;
 import com.proxyme.rider.ProxyMeSettings;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import javax.swing.*;
 
 /**
@@ -29,6 +31,12 @@ public class ModelEditDialog extends JDialog {
     private JSlider temperatureSlider;
     private JLabel temperatureValueLabel;
     private JBCheckBox streamCheckBox;
+    private JSpinner maxRetriesSpinner;
+    private JBCheckBox hedgeCheckBox;
+    private JSpinner hedgePercentileSpinner;
+    private JBCheckBox cacheCheckBox;
+    private JSpinner cacheMaxTemperatureSpinner;
+    private JTextArea fallbacksArea;
 
     // Buttons
     private JButton okButton;
@@ -53,7 +61,7 @@ public class ModelEditDialog extends JDialog {
 
     private void initUI() {
         setLayout(new BorderLayout(10, 10));
-        setPreferredSize(new Dimension(650, 500));
+        setPreferredSize(new Dimension(650, 680));
 
         // Main form panel
         JPanel formPanel = new JPanel(new GridBagLayout());
@@ -218,6 +226,100 @@ public class ModelEditDialog extends JDialog {
         formPanel.add(streamCheckBox, gbc);
         row++;
 
+        // Retry budget
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        formPanel.add(new JBLabel("Max Retries:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.NONE;
+        maxRetriesSpinner = new JSpinner(new SpinnerNumberModel(2, 0, 10, 1));
+        maxRetriesSpinner.setToolTipText(
+            "Retries on 429/5xx or dropped connections, only before any output reaches Rider"
+        );
+        formPanel.add(maxRetriesSpinner, gbc);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        row++;
+
+        // Hedged requests
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.weightx = 0;
+        formPanel.add(new JBLabel("Hedging:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JPanel hedgePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        hedgeCheckBox = new JBCheckBox("Hedge slow requests after p");
+        hedgeCheckBox.setToolTipText(
+            "If no first byte has arrived after this percentile of recent response times, " +
+                "send a second request (to the first fallback, or the same endpoint) and keep whichever answers first"
+        );
+        hedgePercentileSpinner = new JSpinner(
+            new SpinnerNumberModel(95, 50, 99, 1)
+        );
+        hedgeCheckBox.addActionListener(e ->
+            hedgePercentileSpinner.setEnabled(hedgeCheckBox.isSelected())
+        );
+        hedgePanel.add(hedgeCheckBox);
+        hedgePanel.add(hedgePercentileSpinner);
+        hedgePanel.add(new JBLabel(" latency"));
+        formPanel.add(hedgePanel, gbc);
+        row++;
+
+        // Response cache
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.weightx = 0;
+        formPanel.add(new JBLabel("Cache:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JPanel cachePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        cacheCheckBox = new JBCheckBox("Reuse identical responses at temperature ≤ ");
+        cacheCheckBox.setToolTipText(
+            "Answer an exact repeat of an earlier request (same messages and parameters) " +
+                "from the proxy's memory instead of calling the provider again"
+        );
+        cacheMaxTemperatureSpinner = new JSpinner(
+            new SpinnerNumberModel(0.0, 0.0, 2.0, 0.1)
+        );
+        cacheCheckBox.addActionListener(e ->
+            cacheMaxTemperatureSpinner.setEnabled(cacheCheckBox.isSelected())
+        );
+        cachePanel.add(cacheCheckBox);
+        cachePanel.add(cacheMaxTemperatureSpinner);
+        formPanel.add(cachePanel, gbc);
+        row++;
+
+        // Failover chain
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.weightx = 0;
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        formPanel.add(new JBLabel("Fallbacks:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        fallbacksArea = new JTextArea(3, 40);
+        fallbacksArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        formPanel.add(new JScrollPane(fallbacksArea), gbc);
+        gbc.anchor = GridBagConstraints.WEST;
+        row++;
+
+        gbc.gridx = 1;
+        gbc.gridy = row;
+        JLabel fallbacksHelpLabel = new JLabel(
+            "<html><small><i>One per line: provider | endpoint | model id. Tried in order " +
+                "when this endpoint fails; uses that provider's API key</i></small></html>"
+        );
+        fallbacksHelpLabel.setForeground(Color.GRAY);
+        formPanel.add(fallbacksHelpLabel, gbc);
+        row++;
+
         // Info panel
         gbc.gridx = 0;
         gbc.gridy = row;
@@ -267,6 +369,14 @@ public class ModelEditDialog extends JDialog {
         apiKeyField.setText("");
         temperatureSlider.setValue(30); // 0.3 (focused, precise responses)
         streamCheckBox.setSelected(true);
+        maxRetriesSpinner.setValue(2);
+        hedgeCheckBox.setSelected(false);
+        hedgePercentileSpinner.setValue(95);
+        hedgePercentileSpinner.setEnabled(false);
+        cacheCheckBox.setSelected(false);
+        cacheMaxTemperatureSpinner.setValue(0.0);
+        cacheMaxTemperatureSpinner.setEnabled(false);
+        fallbacksArea.setText("");
     }
 
     private void populateFields(ProxyMeSettings.ModelConfig config) {
@@ -285,6 +395,38 @@ public class ModelEditDialog extends JDialog {
 
         // Set stream
         streamCheckBox.setSelected(config.stream);
+
+        // Set retry budget
+        maxRetriesSpinner.setValue(Math.max(0, Math.min(10, config.maxRetries)));
+
+        // Set hedging
+        hedgeCheckBox.setSelected(config.hedge);
+        hedgePercentileSpinner.setValue(
+            Math.max(50, Math.min(99, config.hedgePercentile))
+        );
+        hedgePercentileSpinner.setEnabled(config.hedge);
+
+        // Set response cache
+        cacheCheckBox.setSelected(config.cacheResponses);
+        cacheMaxTemperatureSpinner.setValue(
+            Math.max(0.0, Math.min(2.0, config.cacheMaxTemperature))
+        );
+        cacheMaxTemperatureSpinner.setEnabled(config.cacheResponses);
+
+        // Set failover chain
+        StringBuilder fallbacks = new StringBuilder();
+        if (config.fallbacks != null) {
+            for (ProxyMeSettings.FallbackTarget target : config.fallbacks) {
+                fallbacks
+                    .append(target.apiProvider)
+                    .append(" | ")
+                    .append(target.apiEndpoint)
+                    .append(" | ")
+                    .append(target.modelName)
+                    .append("\n");
+            }
+        }
+        fallbacksArea.setText(fallbacks.toString());
     }
 
     private void updateEndpointBasedOnProvider() {
@@ -347,6 +489,49 @@ public class ModelEditDialog extends JDialog {
         );
     }
 
+    /**
+     * Parse the fallbacks text area, or show an error and return null.
+     * The model id may be omitted to reuse this model's name.
+     */
+    private List<ProxyMeSettings.FallbackTarget> parseFallbacks(
+        String modelName
+    ) {
+        List<ProxyMeSettings.FallbackTarget> fallbacks = new ArrayList<>();
+        String[] lines = fallbacksArea.getText().split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\\|");
+            if (
+                parts.length < 2 ||
+                parts.length > 3 ||
+                parts[0].trim().isEmpty() ||
+                parts[1].trim().isEmpty()
+            ) {
+                JOptionPane.showMessageDialog(
+                    this,
+                    "Fallback line " +
+                        (i + 1) +
+                        " must be: provider | endpoint | model id",
+                    "Validation Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
+                return null;
+            }
+            String targetModel = parts.length == 3 ? parts[2].trim() : "";
+            fallbacks.add(
+                new ProxyMeSettings.FallbackTarget(
+                    parts[0].trim(),
+                    parts[1].trim(),
+                    targetModel.isEmpty() ? modelName : targetModel
+                )
+            );
+        }
+        return fallbacks;
+    }
+
     private void onOk() {
         // Validate inputs
         String modelName = modelNameField.getText().trim();
@@ -371,6 +556,13 @@ public class ModelEditDialog extends JDialog {
             return;
         }
 
+        List<ProxyMeSettings.FallbackTarget> fallbacks = parseFallbacks(
+            modelName
+        );
+        if (fallbacks == null) {
+            return;
+        }
+
         // Build result config
         resultConfig = new ProxyMeSettings.ModelConfig();
         resultConfig.enabled = enabledCheckBox.isSelected();
@@ -386,6 +578,14 @@ public class ModelEditDialog extends JDialog {
         // Set temperature and stream
         resultConfig.temperature = temperatureSlider.getValue() / 100.0;
         resultConfig.stream = streamCheckBox.isSelected();
+        resultConfig.maxRetries = (Integer) maxRetriesSpinner.getValue();
+        resultConfig.hedge = hedgeCheckBox.isSelected();
+        resultConfig.hedgePercentile =
+            (Integer) hedgePercentileSpinner.getValue();
+        resultConfig.cacheResponses = cacheCheckBox.isSelected();
+        resultConfig.cacheMaxTemperature =
+            ((Number) cacheMaxTemperatureSpinner.getValue()).doubleValue();
+        resultConfig.fallbacks = fallbacks;
 
         // Initialize custom headers with default Content-Type
         resultConfig.customHeaders = new HashMap<>();
@@ -29,6 +29,15 @@ public class ProxyMeSettingsPanel {
     // Proxy configuration
     private JBTextField proxyPortField;
     private JBTextField proxyHostField;
+    private JBTextField startupTimeoutField;
+    private JBTextField upstreamMaxSocketsField;
+    private JBTextField upstreamIdleTimeoutField;
+    private JBCheckBox upstreamHttp2CheckBox;
+    private JBTextField streamHighWaterMarkField;
+    private JBTextField responseCacheSizeField;
+    private JBTextField responseCacheTtlField;
+    private JBTextField diskCacheSizeField;
+    private JBCheckBox promptCacheHintsCheckBox;
 
     // Logging settings
     private JBCheckBox showLogsInTerminalCheckBox;
@@ -70,6 +79,47 @@ public class ProxyMeSettingsPanel {
         proxyPortField.setColumns(10);
         proxyHostField = new JBTextField();
         proxyHostField.setColumns(20);
+        startupTimeoutField = new JBTextField();
+        startupTimeoutField.setColumns(5);
+        startupTimeoutField.setToolTipText(
+            "Maximum time to wait for the proxy to answer /health after launch"
+        );
+        upstreamMaxSocketsField = new JBTextField();
+        upstreamMaxSocketsField.setColumns(5);
+        upstreamMaxSocketsField.setToolTipText(
+            "Maximum concurrent connections the proxy keeps open to each provider"
+        );
+        upstreamIdleTimeoutField = new JBTextField();
+        upstreamIdleTimeoutField.setColumns(5);
+        upstreamIdleTimeoutField.setToolTipText(
+            "Close pooled provider connections after this long without traffic"
+        );
+        upstreamHttp2CheckBox = new JBCheckBox(
+            "Use HTTP/2 for provider APIs (falls back to HTTP/1.1)"
+        );
+        streamHighWaterMarkField = new JBTextField();
+        streamHighWaterMarkField.setColumns(5);
+        streamHighWaterMarkField.setToolTipText(
+            "Unsent stream data per client before the proxy stops reading from the provider"
+        );
+        responseCacheSizeField = new JBTextField();
+        responseCacheSizeField.setColumns(5);
+        responseCacheSizeField.setToolTipText(
+            "Memory for cached responses of models with response caching enabled (0 disables the cache)"
+        );
+        responseCacheTtlField = new JBTextField();
+        responseCacheTtlField.setColumns(5);
+        responseCacheTtlField.setToolTipText(
+            "How long a cached response may be replayed"
+        );
+        diskCacheSizeField = new JBTextField();
+        diskCacheSizeField.setColumns(5);
+        diskCacheSizeField.setToolTipText(
+            "Disk space under ~/.proxyme/cache for cached responses kept across proxy restarts (0 disables)"
+        );
+        promptCacheHintsCheckBox = new JBCheckBox(
+            "Help provider prompt caching (stable prefixes, cache breakpoints)"
+        );
 
         showLogsInTerminalCheckBox = new JBCheckBox("Show logs in Terminal");
         saveLogsToFileCheckBox = new JBCheckBox("Save logs to file");
@@ -122,6 +172,33 @@ public class ProxyMeSettingsPanel {
             )
             .addLabeledComponent("Port:", proxyPortField)
             .addLabeledComponent("Host:", proxyHostField)
+            .addLabeledComponent("Startup timeout (s):", startupTimeoutField)
+            .addLabeledComponent(
+                "Max upstream connections:",
+                upstreamMaxSocketsField
+            )
+            .addLabeledComponent(
+                "Upstream idle timeout (s):",
+                upstreamIdleTimeoutField
+            )
+            .addComponent(upstreamHttp2CheckBox)
+            .addLabeledComponent(
+                "Stream buffer per client (KB):",
+                streamHighWaterMarkField
+            )
+            .addLabeledComponent(
+                "Response cache size (MB):",
+                responseCacheSizeField
+            )
+            .addLabeledComponent(
+                "Response cache TTL (min):",
+                responseCacheTtlField
+            )
+            .addLabeledComponent(
+                "Disk cache size (MB):",
+                diskCacheSizeField
+            )
+            .addComponent(promptCacheHintsCheckBox)
             .addVerticalGap(10)
             // Proxy control section
             .addComponent(new JBLabel("<html><b>Proxy Control</b></html>"))
@@ -340,6 +417,14 @@ public class ProxyMeSettingsPanel {
             // Copy temperature and stream settings (v2.1.0)
             settingsModel.temperature = templateModel.temperature;
             settingsModel.stream = templateModel.stream;
+            settingsModel.maxRetries = templateModel.maxRetries;
+            settingsModel.hedge = templateModel.hedge;
+            settingsModel.hedgePercentile = templateModel.hedgePercentile;
+            settingsModel.cacheResponses = templateModel.cacheResponses;
+            settingsModel.cacheMaxTemperature =
+                templateModel.cacheMaxTemperature;
+            settingsModel.fallbacks =
+                ProxyMeSettings.FallbackTarget.copyAll(templateModel.fallbacks);
 
             // Copy custom headers and body params if present
             if (templateModel.customHeaders != null) {
@@ -545,6 +630,31 @@ public class ProxyMeSettingsPanel {
             .getText()
             .equals(String.valueOf(settings.proxyPort));
         modified |= !proxyHostField.getText().equals(settings.proxyHost);
+        modified |= !startupTimeoutField
+            .getText()
+            .equals(String.valueOf(settings.startupTimeoutSeconds));
+        modified |= !upstreamMaxSocketsField
+            .getText()
+            .equals(String.valueOf(settings.upstreamMaxSockets));
+        modified |= !upstreamIdleTimeoutField
+            .getText()
+            .equals(String.valueOf(settings.upstreamIdleTimeoutSeconds));
+        modified |=
+            upstreamHttp2CheckBox.isSelected() != settings.upstreamHttp2;
+        modified |= !streamHighWaterMarkField
+            .getText()
+            .equals(String.valueOf(settings.streamHighWaterMarkKb));
+        modified |= !responseCacheSizeField
+            .getText()
+            .equals(String.valueOf(settings.responseCacheMb));
+        modified |= !responseCacheTtlField
+            .getText()
+            .equals(String.valueOf(settings.responseCacheTtlMinutes));
+        modified |= !diskCacheSizeField
+            .getText()
+            .equals(String.valueOf(settings.diskCacheMb));
+        modified |=
+            promptCacheHintsCheckBox.isSelected() != settings.promptCacheHints;
 
         modified |=
             showLogsInTerminalCheckBox.isSelected() !=
@@ -577,6 +687,93 @@ public class ProxyMeSettingsPanel {
             settings.proxyHost = "localhost";
         }
 
+        // Parse startup timeout with error handling
+        try {
+            String timeoutText = startupTimeoutField.getText().trim();
+            if (!timeoutText.isEmpty()) {
+                int timeout = Integer.parseInt(timeoutText);
+                if (timeout > 0) {
+                    settings.startupTimeoutSeconds = timeout;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Keep existing timeout if invalid
+        }
+
+        // Parse upstream pool settings with error handling
+        try {
+            String socketsText = upstreamMaxSocketsField.getText().trim();
+            if (!socketsText.isEmpty()) {
+                int sockets = Integer.parseInt(socketsText);
+                if (sockets > 0) {
+                    settings.upstreamMaxSockets = sockets;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Keep existing limit if invalid
+        }
+        try {
+            String idleText = upstreamIdleTimeoutField.getText().trim();
+            if (!idleText.isEmpty()) {
+                int idle = Integer.parseInt(idleText);
+                if (idle > 0) {
+                    settings.upstreamIdleTimeoutSeconds = idle;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Keep existing timeout if invalid
+        }
+        settings.upstreamHttp2 = upstreamHttp2CheckBox.isSelected();
+
+        // Parse stream buffer size with error handling
+        try {
+            String bufferText = streamHighWaterMarkField.getText().trim();
+            if (!bufferText.isEmpty()) {
+                int buffer = Integer.parseInt(bufferText);
+                if (buffer > 0) {
+                    settings.streamHighWaterMarkKb = buffer;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Keep existing buffer size if invalid
+        }
+
+        // Parse response cache size and TTL with error handling
+        try {
+            String sizeText = responseCacheSizeField.getText().trim();
+            if (!sizeText.isEmpty()) {
+                int size = Integer.parseInt(sizeText);
+                if (size >= 0) {
+                    settings.responseCacheMb = size;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Keep existing cache size if invalid
+        }
+        try {
+            String ttlText = responseCacheTtlField.getText().trim();
+            if (!ttlText.isEmpty()) {
+                int ttl = Integer.parseInt(ttlText);
+                if (ttl > 0) {
+                    settings.responseCacheTtlMinutes = ttl;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Keep existing TTL if invalid
+        }
+        try {
+            String diskText = diskCacheSizeField.getText().trim();
+            if (!diskText.isEmpty()) {
+                int size = Integer.parseInt(diskText);
+                if (size >= 0) {
+                    settings.diskCacheMb = size;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Keep existing disk cache size if invalid
+        }
+        settings.promptCacheHints = promptCacheHintsCheckBox.isSelected();
+
         settings.showLogsInTerminal = showLogsInTerminalCheckBox.isSelected();
         settings.saveLogsToFile = saveLogsToFileCheckBox.isSelected();
         settings.logFilePath = logFilePathField.getText().trim();
@@ -606,6 +803,58 @@ public class ProxyMeSettingsPanel {
         }
         proxyHostField.setText(settings.proxyHost);
 
+        // Set startup timeout with default if unset
+        if (settings.startupTimeoutSeconds <= 0) {
+            settings.startupTimeoutSeconds = 15;
+        }
+        startupTimeoutField.setText(
+            String.valueOf(settings.startupTimeoutSeconds)
+        );
+
+        // Set upstream pool settings with defaults if unset
+        if (settings.upstreamMaxSockets <= 0) {
+            settings.upstreamMaxSockets = 16;
+        }
+        if (settings.upstreamIdleTimeoutSeconds <= 0) {
+            settings.upstreamIdleTimeoutSeconds = 30;
+        }
+        upstreamMaxSocketsField.setText(
+            String.valueOf(settings.upstreamMaxSockets)
+        );
+        upstreamIdleTimeoutField.setText(
+            String.valueOf(settings.upstreamIdleTimeoutSeconds)
+        );
+        upstreamHttp2CheckBox.setSelected(settings.upstreamHttp2);
+
+        // Set stream buffer size with default if unset
+        if (settings.streamHighWaterMarkKb <= 0) {
+            settings.streamHighWaterMarkKb = 64;
+        }
+        streamHighWaterMarkField.setText(
+            String.valueOf(settings.streamHighWaterMarkKb)
+        );
+
+        // Set response cache settings with defaults if unset
+        if (settings.responseCacheMb < 0) {
+            settings.responseCacheMb = 64;
+        }
+        if (settings.responseCacheTtlMinutes <= 0) {
+            settings.responseCacheTtlMinutes = 60;
+        }
+        if (settings.diskCacheMb < 0) {
+            settings.diskCacheMb = 256;
+        }
+        responseCacheSizeField.setText(
+            String.valueOf(settings.responseCacheMb)
+        );
+        responseCacheTtlField.setText(
+            String.valueOf(settings.responseCacheTtlMinutes)
+        );
+        diskCacheSizeField.setText(
+            String.valueOf(settings.diskCacheMb)
+        );
+        promptCacheHintsCheckBox.setSelected(settings.promptCacheHints);
+
         showLogsInTerminalCheckBox.setSelected(settings.showLogsInTerminal);
         saveLogsToFileCheckBox.setSelected(settings.saveLogsToFile);
         logFilePathField.setText(
@@ -658,6 +907,9 @@ public class ProxyMeSettingsPanel {
                 case ACTIVE:
                     color = new Color(76, 175, 80); // Green
                     break;
+                case DEGRADED:
+                    color = new Color(156, 39, 176); // Purple
+                    break;
                 case WARNING:
                     color = new Color(255, 152, 0); // Orange
                     break;
@@ -10,6 +10,7 @@ import com.intellij.util.Consumer;
 import com.proxyme.rider.ProxyMeConfigurable;
 import com.proxyme.rider.ProxyMeProjectService;
 import com.proxyme.rider.ProxyMeSettings;
+import com.proxyme.rider.ProxyMeSupervisorService;
 import java.awt.event.MouseEvent;
 import javax.swing.Icon;
 import javax.swing.Timer;
@@ -87,6 +88,8 @@ public class ProxyMeStatusBarWidget
         switch (status) {
             case ACTIVE:
                 return AllIcons.RunConfigurations.TestPassed; // Green
+            case DEGRADED:
+                return AllIcons.General.Warning; // Provider circuit open
             case WARNING:
                 return AllIcons.RunConfigurations.TestError; // Orange
             case INACTIVE:
@@ -118,6 +121,20 @@ public class ProxyMeStatusBarWidget
         switch (status) {
             case ACTIVE:
                 tooltip.append("Running on port ").append(settings.proxyPort);
+                int attached =
+                    ProxyMeSupervisorService.getInstance().getAttachedProjectCount();
+                if (attached > 1) {
+                    tooltip
+                        .append(" (shared by ")
+                        .append(attached)
+                        .append(" projects)");
+                }
+                break;
+            case DEGRADED:
+                tooltip
+                    .append("Running on port ")
+                    .append(settings.proxyPort)
+                    .append(" (provider circuit open, failing fast/over)");
                 break;
             case WARNING:
                 tooltip.append("Running with warnings");
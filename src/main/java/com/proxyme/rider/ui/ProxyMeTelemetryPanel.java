@@ -0,0 +1,267 @@
+package com.proxyme.rider.ui;
+
+import com.intellij.ui.JBColor;
+import com.intellij.ui.components.JBLabel;
+import com.proxyme.rider.ProxyMeTelemetryService;
+import java.awt.*;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import javax.swing.*;
+
+/**
+ * Telemetry Panel
+ * Live resource usage of the proxy process with a short history
+ */
+public class ProxyMeTelemetryPanel extends JPanel {
+
+    private static final Color CPU_COLOR = new Color(33, 150, 243);
+    private static final Color MEMORY_COLOR = new Color(156, 39, 176);
+    private static final Color HEAP_COLOR = new Color(0, 150, 136);
+    private static final Color LAG_COLOR = new Color(255, 152, 0);
+
+    private final JBLabel headerLabel;
+    private final JBLabel cpuValue = valueLabel();
+    private final JBLabel rssValue = valueLabel();
+    private final JBLabel heapValue = valueLabel();
+    private final JBLabel lagValue = valueLabel();
+    private final JBLabel processValue = valueLabel();
+
+    private final Sparkline cpuChart = new Sparkline(CPU_COLOR);
+    private final Sparkline rssChart = new Sparkline(MEMORY_COLOR);
+    private final Sparkline heapChart = new Sparkline(HEAP_COLOR);
+    private final Sparkline lagChart = new Sparkline(LAG_COLOR);
+
+    public ProxyMeTelemetryPanel() {
+        super(new BorderLayout(5, 5));
+        setBorder(
+            BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(0, 1, 0, 0, JBColor.GRAY),
+                BorderFactory.createEmptyBorder(0, 8, 0, 0)
+            )
+        );
+        setPreferredSize(new Dimension(280, 200));
+
+        headerLabel = new JBLabel("Resources");
+        headerLabel.setFont(headerLabel.getFont().deriveFont(Font.BOLD));
+        add(headerLabel, BorderLayout.NORTH);
+
+        JPanel rows = new JPanel(new GridBagLayout());
+        GridBagConstraints c = new GridBagConstraints();
+        c.insets = new Insets(2, 0, 2, 6);
+        c.anchor = GridBagConstraints.WEST;
+
+        addRow(rows, c, 0, "CPU", cpuValue, cpuChart);
+        addRow(rows, c, 1, "RSS", rssValue, rssChart);
+        addRow(rows, c, 2, "Heap", heapValue, heapChart);
+        addRow(rows, c, 3, "Loop lag", lagValue, lagChart);
+        addRow(rows, c, 4, "Procs", processValue, null);
+
+        add(rows, BorderLayout.CENTER);
+        showNotRunning();
+    }
+
+    private static JBLabel valueLabel() {
+        JBLabel label = new JBLabel("-");
+        label.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        return label;
+    }
+
+    private static void addRow(
+        JPanel rows,
+        GridBagConstraints c,
+        int row,
+        String name,
+        JBLabel value,
+        Sparkline chart
+    ) {
+        c.gridy = row;
+
+        c.gridx = 0;
+        c.weightx = 0;
+        c.fill = GridBagConstraints.NONE;
+        JBLabel nameLabel = new JBLabel(name);
+        nameLabel.setForeground(JBColor.GRAY);
+        rows.add(nameLabel, c);
+
+        c.gridx = 1;
+        rows.add(value, c);
+
+        c.gridx = 2;
+        c.weightx = 1;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        rows.add(chart != null ? chart : new JPanel(), c);
+    }
+
+    /**
+     * Redraw from the telemetry service's history (call on the EDT)
+     */
+    public void refresh() {
+        List<ProxyMeTelemetryService.Sample> history =
+            ProxyMeTelemetryService.getInstance().getHistory();
+        if (history.isEmpty()) {
+            showNotRunning();
+            return;
+        }
+
+        ProxyMeTelemetryService.Sample latest = history.get(
+            history.size() - 1
+        );
+        headerLabel.setText("Resources (PID " + latest.pid + ")");
+
+        cpuValue.setText(
+            latest.cpuPercent >= 0
+                ? String.format("%.1f%%", latest.cpuPercent)
+                : "-"
+        );
+        rssValue.setText(formatBytes(latest.rssBytes));
+        heapValue.setText(
+            latest.heapUsedBytes >= 0
+                ? formatBytes(latest.heapUsedBytes) +
+                " / " +
+                formatBytes(latest.heapTotalBytes)
+                : "-"
+        );
+        lagValue.setText(
+            latest.eventLoopLagP99Ms >= 0
+                ? String.format(
+                    "p99 %.1f ms, max %.0f ms",
+                    latest.eventLoopLagP99Ms,
+                    latest.eventLoopLagMaxMs
+                )
+                : "-"
+        );
+        processValue.setText(
+            latest.processCount +
+                " procs, " +
+                count(latest.threads) +
+                " thr, " +
+                count(latest.openFds) +
+                " fds, " +
+                count(latest.sockets) +
+                " sock"
+        );
+
+        cpuChart.setValues(series(history, s -> s.cpuPercent));
+        rssChart.setValues(series(history, s -> s.rssBytes));
+        heapChart.setValues(series(history, s -> s.heapUsedBytes));
+        lagChart.setValues(series(history, s -> s.eventLoopLagP99Ms));
+    }
+
+    private void showNotRunning() {
+        headerLabel.setText("Resources (proxy not running)");
+        for (JBLabel label : new JBLabel[] {
+            cpuValue,
+            rssValue,
+            heapValue,
+            lagValue,
+            processValue,
+        }) {
+            label.setText("-");
+        }
+        for (Sparkline chart : new Sparkline[] {
+            cpuChart,
+            rssChart,
+            heapChart,
+            lagChart,
+        }) {
+            chart.setValues(new double[0]);
+        }
+    }
+
+    private static double[] series(
+        List<ProxyMeTelemetryService.Sample> history,
+        ToDoubleFunction<ProxyMeTelemetryService.Sample> metric
+    ) {
+        double[] values = new double[history.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = metric.applyAsDouble(history.get(i));
+        }
+        return values;
+    }
+
+    private static String count(int value) {
+        return value >= 0 ? String.valueOf(value) : "-";
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "-";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.0f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    /**
+     * Minimal line chart of recent values, scaled to the visible maximum.
+     * Negative values (not available) are skipped.
+     */
+    private static final class Sparkline extends JComponent {
+
+        private final Color color;
+        private double[] values = new double[0];
+
+        Sparkline(Color color) {
+            this.color = color;
+            setPreferredSize(new Dimension(90, 18));
+            setMinimumSize(new Dimension(40, 18));
+        }
+
+        void setValues(double[] values) {
+            this.values = values;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (values.length < 2) {
+                return;
+            }
+
+            double max = 0;
+            for (double value : values) {
+                max = Math.max(max, value);
+            }
+            if (max <= 0) {
+                max = 1;
+            }
+
+            Graphics2D g2 = (Graphics2D) g.create();
+            try {
+                g2.setRenderingHint(
+                    RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON
+                );
+                g2.setColor(color);
+
+                int width = getWidth() - 1;
+                int height = getHeight() - 2;
+                double step = (double) width / (values.length - 1);
+                int prevX = -1;
+                int prevY = -1;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] < 0) {
+                        prevX = -1;
+                        continue;
+                    }
+                    int x = (int) Math.round(i * step);
+                    int y = 1 + height - (int) Math.round(
+                        (values[i] / max) * height
+                    );
+                    if (prevX >= 0) {
+                        g2.drawLine(prevX, prevY, x, y);
+                    }
+                    prevX = x;
+                    prevY = y;
+                }
+            } finally {
+                g2.dispose();
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.components.JBTextArea;
 import com.proxyme.rider.ProxyMeProjectService;
 import com.proxyme.rider.ProxyMeSettings;
+import com.proxyme.rider.ProxyMeTelemetryService;
 import java.awt.*;
 import java.io.*;
 import java.nio.file.Files;
@@ -33,12 +34,14 @@ public class ProxyMeToolWindowContent {
     private JButton healthCheckButton;
     private JBLabel statusLabel;
     private JCheckBox autoScrollCheckBox;
+    private ProxyMeTelemetryPanel telemetryPanel;
     private Timer logUpdateTimer;
     private long lastLogPosition = 0;
 
     public ProxyMeToolWindowContent(Project project) {
         this.project = project;
         createToolWindowContent();
+        ProxyMeTelemetryService.getInstance().subscribe();
         startLogMonitoring();
     }
 
@@ -124,7 +127,14 @@ public class ProxyMeToolWindowContent {
         );
         scrollPane.setPreferredSize(new Dimension(800, 200));
 
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        // Live resource usage next to the log
+        telemetryPanel = new ProxyMeTelemetryPanel();
+
+        JPanel centerPanel = new JPanel(new BorderLayout(5, 0));
+        centerPanel.add(scrollPane, BorderLayout.CENTER);
+        centerPanel.add(telemetryPanel, BorderLayout.EAST);
+
+        mainPanel.add(centerPanel, BorderLayout.CENTER);
 
         // Bottom panel - Quick Help
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 2));
@@ -217,6 +227,7 @@ public class ProxyMeToolWindowContent {
         logUpdateTimer = new Timer(2000, e -> {
             updateStatusLabel();
             updateLogDisplay();
+            telemetryPanel.refresh();
         });
         logUpdateTimer.start();
     }
@@ -238,6 +249,15 @@ public class ProxyMeToolWindowContent {
                     stopButton.setEnabled(true);
                     restartButton.setEnabled(true);
                     break;
+                case DEGRADED:
+                    statusLabel.setText(
+                        "● Proxy: Degraded (provider circuit open)"
+                    );
+                    statusLabel.setForeground(new Color(156, 39, 176)); // Purple
+                    launchButton.setEnabled(false);
+                    stopButton.setEnabled(true);
+                    restartButton.setEnabled(true);
+                    break;
                 case WARNING:
                     statusLabel.setText("● Proxy: Warning");
                     statusLabel.setForeground(new Color(255, 152, 0)); // Orange
@@ -401,5 +421,6 @@ public class ProxyMeToolWindowContent {
         if (logUpdateTimer != null) {
             logUpdateTimer.stop();
         }
+        ProxyMeTelemetryService.getInstance().unsubscribe();
     }
 }
@@ -282,6 +282,14 @@ public class SaveTemplateDialog extends JDialog {
             // Copy temperature and stream settings (v2.1.0)
             templateModel.temperature = settingsModel.temperature;
             templateModel.stream = settingsModel.stream;
+            templateModel.maxRetries = settingsModel.maxRetries;
+            templateModel.hedge = settingsModel.hedge;
+            templateModel.hedgePercentile = settingsModel.hedgePercentile;
+            templateModel.cacheResponses = settingsModel.cacheResponses;
+            templateModel.cacheMaxTemperature =
+                settingsModel.cacheMaxTemperature;
+            templateModel.fallbacks =
+                ProxyMeSettings.FallbackTarget.copyAll(settingsModel.fallbacks);
 
             // Copy custom headers and body params if present
             if (
@@ -0,0 +1,266 @@
+/**
+ * Circuit breakers, one per upstream endpoint
+ *
+ * A breaker watches a rolling window of calls to its endpoint. Once enough
+ * of them fail (connection error, timeout, 5xx) or are slow, it opens and
+ * calls are rejected immediately with ECIRCUITOPEN instead of waiting out
+ * the provider's timeouts; the failover chain then moves on to the next
+ * target. After a cool-down the breaker goes half-open and lets a few probe
+ * requests through: if they all succeed it closes, if one fails it opens
+ * again.
+ */
+
+const CLOSED = "closed";
+const OPEN = "open";
+const HALF_OPEN = "half_open";
+
+const DEFAULTS = {
+  windowMs: 60000, // rolling window for error/latency rates
+  minCalls: 5, // don't judge an endpoint on fewer calls than this
+  failureRate: 0.5, // open at 50% failures...
+  slowCallMs: 30000, // ...or when calls taking longer than this
+  slowCallRate: 0.8, // make up 80% of the window
+  openMs: 15000, // cool-down before half-open probing
+  halfOpenProbes: 2, // concurrent probes, and successes needed to close
+};
+
+class CircuitBreaker {
+  constructor(key, options, onStateChange) {
+    this.key = key;
+    this.options = options;
+    this.onStateChange = onStateChange;
+    this.state = CLOSED;
+    this.calls = [];
+    this.openedAt = 0;
+    this.probesInFlight = 0;
+    this.probeSuccesses = 0;
+    this.lastFailure = null;
+    this.timesOpened = 0;
+    this.rejected = 0;
+  }
+
+  /**
+   * Permission for one call, or null while open (or while half-open with
+   * all probe slots taken). The permit must be settled exactly once.
+   */
+  acquire() {
+    if (this.state === OPEN && Date.now() - this.openedAt >= this.options.openMs) {
+      this.transition(HALF_OPEN);
+      this.probesInFlight = 0;
+      this.probeSuccesses = 0;
+    }
+    if (this.state === OPEN) {
+      this.rejected += 1;
+      return null;
+    }
+
+    const probe = this.state === HALF_OPEN;
+    if (probe) {
+      if (this.probesInFlight >= this.options.halfOpenProbes) {
+        this.rejected += 1;
+        return null;
+      }
+      this.probesInFlight += 1;
+    }
+
+    let settled = false;
+    const settle = (outcome) => {
+      if (!settled) {
+        settled = true;
+        this.onResult(probe, outcome);
+      }
+    };
+    return {
+      success: (latencyMs) => settle({ ok: true, latencyMs }),
+      failure: (reason) => settle({ ok: false, reason }),
+      // Neither success nor failure (e.g. the client cancelled)
+      release: () => settle(null),
+    };
+  }
+
+  onResult(probe, outcome) {
+    if (probe) {
+      this.probesInFlight -= 1;
+      if (this.state !== HALF_OPEN || !outcome) {
+        return;
+      }
+      if (!outcome.ok) {
+        this.trip(outcome.reason);
+      } else if (++this.probeSuccesses >= this.options.halfOpenProbes) {
+        this.calls = [];
+        this.transition(CLOSED);
+      }
+      return;
+    }
+
+    if (!outcome || this.state !== CLOSED) {
+      return;
+    }
+    if (!outcome.ok) {
+      this.lastFailure = outcome.reason;
+    }
+    const now = Date.now();
+    this.calls.push({
+      at: now,
+      ok: outcome.ok,
+      slow: outcome.ok && outcome.latencyMs >= this.options.slowCallMs,
+      latencyMs: outcome.latencyMs,
+    });
+    this.prune(now);
+
+    const { total, failureRate, slowRate } = this.rates();
+    if (total < this.options.minCalls) {
+      return;
+    }
+    if (failureRate >= this.options.failureRate) {
+      this.trip(`${Math.round(failureRate * 100)}% of ${total} calls failed (last: ${this.lastFailure})`);
+    } else if (slowRate >= this.options.slowCallRate) {
+      this.trip(`${Math.round(slowRate * 100)}% of ${total} calls slower than ${this.options.slowCallMs}ms`);
+    }
+  }
+
+  trip(reason) {
+    this.openedAt = Date.now();
+    this.timesOpened += 1;
+    this.lastFailure = reason;
+    this.calls = [];
+    this.transition(OPEN, reason);
+  }
+
+  transition(state, reason) {
+    const from = this.state;
+    this.state = state;
+    if (from !== state && this.onStateChange) {
+      this.onStateChange(this.key, from, state, reason);
+    }
+  }
+
+  prune(now) {
+    const cutoff = now - this.options.windowMs;
+    while (this.calls.length > 0 && this.calls[0].at < cutoff) {
+      this.calls.shift();
+    }
+  }
+
+  rates() {
+    const total = this.calls.length;
+    if (total === 0) {
+      return { total, failureRate: 0, slowRate: 0 };
+    }
+    const failures = this.calls.filter((call) => !call.ok).length;
+    const slow = this.calls.filter((call) => call.slow).length;
+    return { total, failureRate: failures / total, slowRate: slow / total };
+  }
+
+  /**
+   * Milliseconds until an open breaker allows a probe
+   */
+  retryInMs() {
+    return this.state === OPEN
+      ? Math.max(0, this.options.openMs - (Date.now() - this.openedAt))
+      : 0;
+  }
+
+  snapshot() {
+    this.prune(Date.now());
+    const { total, failureRate, slowRate } = this.rates();
+    const latencies = this.calls
+      .filter((call) => call.ok)
+      .map((call) => call.latencyMs)
+      .sort((a, b) => a - b);
+    return {
+      state: this.state,
+      calls: total,
+      failure_rate: Math.round(failureRate * 1000) / 1000,
+      slow_rate: Math.round(slowRate * 1000) / 1000,
+      latency_p50_ms: percentile(latencies, 0.5),
+      latency_p95_ms: percentile(latencies, 0.95),
+      times_opened: this.timesOpened,
+      rejected: this.rejected,
+      opened_at: this.openedAt ? new Date(this.openedAt).toISOString() : null,
+      retry_in_ms: this.retryInMs(),
+      last_failure: this.lastFailure,
+    };
+  }
+}
+
+function percentile(sorted, p) {
+  if (sorted.length === 0) {
+    return null;
+  }
+  return sorted[Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+}
+
+class CircuitBreakers {
+  constructor(options = {}, onStateChange) {
+    this.options = { ...DEFAULTS, ...options };
+    this.onStateChange = onStateChange;
+    this.breakers = new Map();
+  }
+
+  get(key) {
+    let breaker = this.breakers.get(key);
+    if (!breaker) {
+      breaker = new CircuitBreaker(key, this.options, this.onStateChange);
+      this.breakers.set(key, breaker);
+    }
+    return breaker;
+  }
+
+  /**
+   * Run one upstream call through the endpoint's breaker.
+   *
+   * The breaker decides first, so an open endpoint fails fast before any
+   * rate-limit budget is reserved or concurrency slot waited for. call(sent)
+   * resolves with an axios-like response and calls sent() once local waiting
+   * is over and the request goes out; latency is timed from there. A 5xx or
+   * a rejection after sent() counts as a failure, anything else as a
+   * success timed to the response headers. Calls cut short by `signal`, or
+   * rejected before they were sent (pacing, queue full), are not counted.
+   * Rejects with code ECIRCUITOPEN without calling when the breaker is open.
+   */
+  async run(key, call, { signal } = {}) {
+    const breaker = this.get(key);
+    const permit = breaker.acquire();
+    if (!permit) {
+      const error = new Error(
+        `Circuit open for ${key}; retrying in ${Math.ceil(breaker.retryInMs() / 1000)}s`,
+      );
+      error.code = "ECIRCUITOPEN";
+      throw error;
+    }
+
+    let start = null;
+    const sent = () => {
+      start = start ?? Date.now();
+    };
+    try {
+      const response = await call(sent);
+      if (response.status >= 500) {
+        permit.failure(`HTTP ${response.status}`);
+      } else {
+        permit.success(Date.now() - (start ?? Date.now()));
+      }
+      return response;
+    } catch (error) {
+      if (signal?.aborted || start === null) {
+        permit.release();
+      } else {
+        permit.failure(error.code || error.message);
+      }
+      throw error;
+    }
+  }
+
+  anyOpen() {
+    return [...this.breakers.values()].some((breaker) => breaker.state !== CLOSED);
+  }
+
+  snapshot() {
+    return Object.fromEntries(
+      [...this.breakers].map(([key, breaker]) => [key, breaker.snapshot()]),
+    );
+  }
+}
+
+module.exports = { CircuitBreakers };
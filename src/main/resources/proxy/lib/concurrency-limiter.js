@@ -0,0 +1,244 @@
+/**
+ * Adaptive concurrency limits, one per provider + API key
+ *
+ * Each limiter caps how many requests are in flight to a provider at once
+ * and adjusts that cap with AIMD: every fast response grows the limit by
+ * 1/limit (about +1 per round of requests), while a 429/503 halves it and a
+ * response much slower than the provider's no-load latency cuts it by 10%.
+ * Requests over the limit wait in a short queue instead of failing, one
+ * lane per request class served weighted-fair (see priority.js); only when
+ * the queue is full or the wait runs out do they reject with ELIMITQUEUE.
+ * A streamed response holds its slot until the stream closes.
+ */
+
+const { WeightedFairQueue } = require("./priority");
+
+const DEFAULTS = {
+  initialLimit: 8,
+  minLimit: 1,
+  maxLimit: 64,
+  maxQueue: 100, // waiting requests per limiter
+  queueTimeoutMs: 15000, // longest wait for a slot
+  slowFactor: 2, // "slow" = latency above this multiple of the baseline
+  decreaseCooldownMs: 1000, // one decrease per burst of bad responses
+};
+
+// Statuses that mean "you are sending too much"
+const OVERLOAD_STATUS = new Set([429, 503]);
+
+class ConcurrencyLimiter {
+  constructor(key, options) {
+    this.key = key;
+    this.options = options;
+    this.limit = options.initialLimit;
+    this.inFlight = 0;
+    this.queue = new WeightedFairQueue();
+    this.baselineMs = null;
+    this.lastDecreaseAt = 0;
+    this.stats = {
+      granted: 0,
+      queued: 0,
+      max_queued: 0,
+      rejected: 0,
+      throttled: 0,
+      increases: 0,
+      decreases: 0,
+    };
+  }
+
+  /**
+   * Resolves when a slot is free, queueing in the lane of `priority` (a
+   * request class). Rejects with ELIMITQUEUE when the queue is full or the
+   * wait times out, and with the abort reason on `signal`.
+   */
+  acquire(signal, priority) {
+    if (this.inFlight < Math.floor(this.limit) && this.queue.length === 0) {
+      this.grant();
+      return Promise.resolve();
+    }
+    if (this.queue.length >= this.options.maxQueue) {
+      this.stats.rejected += 1;
+      return Promise.reject(this.queueError("queue full"));
+    }
+
+    return new Promise((resolve, reject) => {
+      const waiter = {};
+      const leave = () => {
+        clearTimeout(waiter.timer);
+        signal?.removeEventListener("abort", waiter.onAbort);
+        this.queue.remove(waiter);
+      };
+      waiter.resolve = () => {
+        leave();
+        this.grant();
+        resolve();
+      };
+      waiter.onAbort = () => {
+        leave();
+        reject(signal.reason);
+      };
+      waiter.timer = setTimeout(() => {
+        leave();
+        this.stats.rejected += 1;
+        reject(this.queueError(`no slot within ${this.options.queueTimeoutMs}ms`));
+      }, this.options.queueTimeoutMs);
+      if (signal?.aborted) {
+        waiter.onAbort();
+        return;
+      }
+      signal?.addEventListener("abort", waiter.onAbort, { once: true });
+      this.queue.push(priority, waiter);
+      this.stats.queued += 1;
+      this.stats.max_queued = Math.max(this.stats.max_queued, this.queue.length);
+    });
+  }
+
+  grant() {
+    this.inFlight += 1;
+    this.stats.granted += 1;
+  }
+
+  /**
+   * Give a slot back. latencyMs/status describe the response (status is
+   * undefined for network errors, which don't move the limit).
+   */
+  release({ latencyMs, status } = {}) {
+    this.inFlight -= 1;
+    if (OVERLOAD_STATUS.has(status)) {
+      this.stats.throttled += 1;
+      this.decrease(0.5);
+    } else if (status !== undefined && status < 500 && latencyMs !== undefined) {
+      this.observe(latencyMs);
+    }
+    this.drain();
+  }
+
+  observe(latencyMs) {
+    // Baseline: the lowest recent latency, drifting up slowly so a
+    // provider that got permanently slower isn't "slow" forever
+    this.baselineMs =
+      this.baselineMs === null
+        ? latencyMs
+        : Math.min(latencyMs, this.baselineMs * 1.01);
+
+    if (latencyMs > this.baselineMs * this.options.slowFactor) {
+      this.decrease(0.9);
+    } else if (this.inFlight + 1 >= this.limit / 2) {
+      // Only grow while the limit is actually being used
+      const before = Math.floor(this.limit);
+      this.limit = Math.min(this.options.maxLimit, this.limit + 1 / this.limit);
+      if (Math.floor(this.limit) > before) {
+        this.stats.increases += 1;
+      }
+    }
+  }
+
+  decrease(factor) {
+    const now = Date.now();
+    if (now - this.lastDecreaseAt < this.options.decreaseCooldownMs) {
+      return;
+    }
+    this.lastDecreaseAt = now;
+    this.limit = Math.max(this.options.minLimit, this.limit * factor);
+    this.stats.decreases += 1;
+  }
+
+  drain() {
+    while (this.queue.length > 0 && this.inFlight < Math.floor(this.limit)) {
+      this.queue.shift().resolve();
+    }
+  }
+
+  queueError(reason) {
+    const error = new Error(`Too many concurrent requests to ${this.key} (${reason})`);
+    error.code = "ELIMITQUEUE";
+    return error;
+  }
+
+  snapshot() {
+    return {
+      limit: Math.round(this.limit * 100) / 100,
+      in_flight: this.inFlight,
+      queue_depth: this.queue.length,
+      baseline_ms: this.baselineMs === null ? null : Math.round(this.baselineMs),
+      ...this.stats,
+      lanes: this.queue.snapshot(),
+    };
+  }
+}
+
+class ConcurrencyLimiters {
+  constructor(options = {}) {
+    this.options = { ...DEFAULTS, ...options };
+    this.limiters = new Map();
+  }
+
+  get(key) {
+    let limiter = this.limiters.get(key);
+    if (!limiter) {
+      limiter = new ConcurrencyLimiter(key, this.options);
+      this.limiters.set(key, limiter);
+    }
+    return limiter;
+  }
+
+  /**
+   * Run one upstream call inside a concurrency slot.
+   *
+   * call() resolves with an axios-like response; `priority` is the request
+   * class whose lane it waits in. The slot is returned when
+   * the call fails, or - for a streamed body - when the stream closes, and
+   * the response's time-to-headers and status feed the limit.
+   */
+  async run(key, call, { signal, priority } = {}) {
+    const limiter = this.get(key);
+    await limiter.acquire(signal, priority);
+
+    const start = Date.now();
+    let response;
+    try {
+      response = await call();
+    } catch (error) {
+      limiter.release();
+      throw error;
+    }
+
+    const outcome = { latencyMs: Date.now() - start, status: response.status };
+    const body = response.data;
+    if (body && typeof body.once === "function" && typeof body.destroy === "function") {
+      let released = false;
+      const release = () => {
+        if (!released) {
+          released = true;
+          limiter.release(outcome);
+        }
+      };
+      if (body.destroyed || body.readableEnded) {
+        release();
+      } else {
+        body.once("close", release);
+        body.once("end", release);
+        body.once("error", release);
+      }
+    } else {
+      limiter.release(outcome);
+    }
+    return response;
+  }
+
+  /**
+   * Whether a call for key would have to wait for a slot
+   */
+  saturated(key) {
+    const limiter = this.limiters.get(key);
+    return Boolean(limiter) && (limiter.queue.length > 0 || limiter.inFlight >= Math.floor(limiter.limit));
+  }
+
+  snapshot() {
+    return Object.fromEntries(
+      [...this.limiters].map(([key, limiter]) => [key, limiter.snapshot()]),
+    );
+  }
+}
+
+module.exports = { ConcurrencyLimiters };
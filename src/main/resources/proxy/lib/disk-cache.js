@@ -0,0 +1,466 @@
+/**
+ * Disk tier of the response cache, kept under ~/.proxyme/cache
+ *
+ * Answers are appended to segment files (segment-000001.log, ...) and never
+ * rewritten in place. A compact index - one fixed-size entry per key - maps
+ * each key to its record and is read back in a single buffer at startup, so
+ * a restarted proxy (or the fresh worker of a reload) answers repeats from
+ * disk straight away. Records appended after the last index save are
+ * recovered by scanning the tail of the newest segment.
+ *
+ * The total size is bounded: segments that are mostly dead (overwritten or
+ * expired entries) are compacted into the active one, and past the budget
+ * the oldest segment is dropped whole. Only one worker owns the directory at
+ * a time (cache.lock); a reloading worker hands it over while draining.
+ *
+ * Record:      magic u8 | kind u8 | key 32 | expiresAt f64 | length u32 | payload
+ * Index file:  "PXC1" | count u32 | segment u32 | segmentLength u32 | entries
+ * Index entry: key 32 | segment u32 | offset u32 | size u32 | expiresAt f64
+ */
+const fs = require("fs");
+const path = require("path");
+
+const RECORD_MAGIC = 0x50;
+const RECORD_HEADER = 1 + 1 + 32 + 8 + 4;
+const INDEX_MAGIC = "PXC1";
+const INDEX_HEADER = 4 + 4 + 4 + 4;
+const INDEX_ENTRY = 32 + 4 + 4 + 4 + 8;
+
+const KIND_SSE = 0;
+const KIND_JSON = 1;
+
+const SEGMENT_MAX_BYTES = 8 * 1024 * 1024;
+// Compact a closed segment once less than this share of it is still live
+const COMPACT_LIVE_RATIO = 0.5;
+const INDEX_SAVE_DELAY_MS = 30000;
+const LOCK_RETRY_MS = 1000;
+
+function segmentName(id) {
+  return `segment-${String(id).padStart(6, "0")}.log`;
+}
+
+function isAlive(pid) {
+  try {
+    process.kill(pid, 0);
+    return true;
+  } catch (error) {
+    return error.code === "EPERM";
+  }
+}
+
+class DiskCache {
+  constructor({ dir, maxBytes, ttlMs }) {
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    this.ttlMs = ttlMs;
+    this.index = new Map(); // key hex -> { segment, offset, size, expiresAt }
+    this.segments = new Map(); // id -> { bytes, live }
+    this.readers = new Map(); // id -> FileHandle
+    this.active = null; // { id, handle, bytes }
+    this.ready = false;
+    this.closed = false;
+    this.writes = Promise.resolve();
+    this.saveTimer = null;
+    this.lockTimer = null;
+    this.models = new Map();
+    this.stats = { compactions: 0, evicted_segments: 0, recovered: 0, write_errors: 0 };
+  }
+
+  static fromEnv(env = process.env) {
+    const home = env.HOME || env.USERPROFILE;
+    return new DiskCache({
+      dir: env.PROXYME_DISK_CACHE_DIR || path.join(home, ".proxyme", "cache"),
+      maxBytes: parseInt(env.PROXYME_DISK_CACHE_MAX_BYTES || String(256 * 1024 * 1024), 10),
+      ttlMs: parseInt(env.PROXYME_RESPONSE_CACHE_TTL_MS || "3600000", 10),
+    });
+  }
+
+  get enabled() {
+    return this.maxBytes > 0;
+  }
+
+  /**
+   * Take the directory lock and load the index; retries in the background
+   * while another live worker still owns it. Never throws.
+   */
+  open() {
+    if (!this.enabled || this.closed) {
+      return;
+    }
+    try {
+      fs.mkdirSync(this.dir, { recursive: true });
+      if (!this.lock()) {
+        this.lockTimer = setTimeout(() => this.open(), LOCK_RETRY_MS);
+        this.lockTimer.unref();
+        return;
+      }
+      this.load();
+      this.ready = true;
+      console.log(
+        `💽 Disk cache ready: ${this.index.size} entries in ${this.segments.size} segments (${this.dir})`,
+      );
+      this.maintain();
+    } catch (error) {
+      console.error(`❌ Disk cache unavailable: ${error.message}`);
+    }
+  }
+
+  lock() {
+    const lockPath = path.join(this.dir, "cache.lock");
+    try {
+      fs.writeFileSync(lockPath, String(process.pid), { flag: "wx" });
+      return true;
+    } catch (error) {
+      if (error.code !== "EEXIST") {
+        throw error;
+      }
+    }
+    const owner = parseInt(fs.readFileSync(lockPath, "utf8"), 10);
+    if (owner && owner !== process.pid && isAlive(owner)) {
+      return false;
+    }
+    // Left behind by a worker that died without closing
+    fs.unlinkSync(lockPath);
+    return this.lock();
+  }
+
+  load() {
+    for (const name of fs.readdirSync(this.dir)) {
+      const match = /^segment-(\d+)\.log$/.exec(name);
+      if (match) {
+        const { size } = fs.statSync(path.join(this.dir, name));
+        this.segments.set(Number(match[1]), { bytes: size, live: 0 });
+      }
+    }
+
+    let indexedSegment = 0;
+    let indexedLength = 0;
+    const indexPath = path.join(this.dir, "index.bin");
+    if (fs.existsSync(indexPath)) {
+      const buffer = fs.readFileSync(indexPath);
+      if (buffer.length >= INDEX_HEADER && buffer.toString("latin1", 0, 4) === INDEX_MAGIC) {
+        const count = buffer.readUInt32BE(4);
+        indexedSegment = buffer.readUInt32BE(8);
+        indexedLength = buffer.readUInt32BE(12);
+        for (let i = 0; i < count; i++) {
+          const at = INDEX_HEADER + i * INDEX_ENTRY;
+          if (at + INDEX_ENTRY > buffer.length) {
+            break;
+          }
+          this.track(buffer.toString("hex", at, at + 32), {
+            segment: buffer.readUInt32BE(at + 32),
+            offset: buffer.readUInt32BE(at + 36),
+            size: buffer.readUInt32BE(at + 40),
+            expiresAt: buffer.readDoubleBE(at + 44),
+          });
+        }
+      }
+    }
+
+    // Records written after the index was last saved
+    const ids = [...this.segments.keys()].sort((a, b) => a - b);
+    for (const id of ids.filter((id) => id >= indexedSegment)) {
+      this.scan(id, id === indexedSegment ? indexedLength : 0);
+    }
+    const newest = ids.length > 0 ? ids[ids.length - 1] : 0;
+    this.openActive(newest > 0 && this.segments.get(newest).bytes < SEGMENT_MAX_BYTES ? newest : newest + 1);
+  }
+
+  /**
+   * Index the records of a segment from `from` on; a torn record at the end
+   * (crash mid-write) is cut off
+   */
+  scan(id, from) {
+    const file = path.join(this.dir, segmentName(id));
+    const buffer = fs.readFileSync(file);
+    let offset = from;
+    while (offset + RECORD_HEADER <= buffer.length && buffer[offset] === RECORD_MAGIC) {
+      const size = RECORD_HEADER + buffer.readUInt32BE(offset + 42);
+      if (offset + size > buffer.length) {
+        break;
+      }
+      this.track(buffer.toString("hex", offset + 2, offset + 34), {
+        segment: id,
+        offset,
+        size,
+        expiresAt: buffer.readDoubleBE(offset + 34),
+      });
+      this.stats.recovered += 1;
+      offset += size;
+    }
+    if (offset < buffer.length) {
+      fs.truncateSync(file, offset);
+      this.segments.get(id).bytes = offset;
+    }
+  }
+
+  track(key, location) {
+    const segment = this.segments.get(location.segment);
+    if (!segment || location.offset + location.size > segment.bytes) {
+      return;
+    }
+    this.forget(key);
+    this.index.set(key, location);
+    segment.live += location.size;
+  }
+
+  forget(key) {
+    const previous = this.index.get(key);
+    if (previous) {
+      this.index.delete(key);
+      const segment = this.segments.get(previous.segment);
+      if (segment) {
+        segment.live -= previous.size;
+      }
+    }
+  }
+
+  openActive(id) {
+    if (this.active) {
+      fs.closeSync(this.active.fd);
+    }
+    const file = path.join(this.dir, segmentName(id));
+    const fd = fs.openSync(file, "a");
+    if (!this.segments.has(id)) {
+      this.segments.set(id, { bytes: 0, live: 0 });
+    }
+    this.active = { id, fd };
+  }
+
+  modelStats(model) {
+    let stats = this.models.get(model);
+    if (!stats) {
+      stats = { hits: 0, misses: 0, stores: 0 };
+      this.models.set(model, stats);
+    }
+    return stats;
+  }
+
+  /**
+   * { kind: "sse" | "json", text, expiresAt } for a key, or null
+   */
+  async get(key, model) {
+    if (!this.ready) {
+      return null;
+    }
+    const stats = this.modelStats(model);
+    const location = this.index.get(key);
+    if (!location || Date.now() > location.expiresAt) {
+      if (location) {
+        this.forget(key);
+        this.scheduleSave();
+      }
+      stats.misses += 1;
+      return null;
+    }
+    try {
+      const record = await this.read(location);
+      stats.hits += 1;
+      return {
+        kind: record[1] === KIND_SSE ? "sse" : "json",
+        text: record.toString("utf8", RECORD_HEADER),
+        expiresAt: location.expiresAt,
+      };
+    } catch (error) {
+      this.forget(key);
+      stats.misses += 1;
+      return null;
+    }
+  }
+
+  async read({ segment, offset, size }) {
+    let reader = this.readers.get(segment);
+    if (!reader) {
+      reader = await fs.promises.open(path.join(this.dir, segmentName(segment)), "r");
+      if (this.closed) {
+        await reader.close();
+        throw new Error("disk cache closed");
+      }
+      this.readers.set(segment, reader);
+    }
+    const record = Buffer.alloc(size);
+    await reader.read(record, 0, size, offset);
+    if (record[0] !== RECORD_MAGIC) {
+      throw new Error("corrupt record");
+    }
+    return record;
+  }
+
+  /**
+   * Append an answer (kind "sse" or "json") for a key
+   */
+  set(key, kind, text, model) {
+    if (!this.ready) {
+      return;
+    }
+    this.modelStats(model).stores += 1;
+    const payload = Buffer.from(text, "utf8");
+    const record = Buffer.alloc(RECORD_HEADER + payload.length);
+    record[0] = RECORD_MAGIC;
+    record[1] = kind === "sse" ? KIND_SSE : KIND_JSON;
+    Buffer.from(key, "hex").copy(record, 2);
+    record.writeDoubleBE(Date.now() + this.ttlMs, 34);
+    record.writeUInt32BE(payload.length, 42);
+    payload.copy(record, RECORD_HEADER);
+    this.enqueue(() => this.append(key, record));
+  }
+
+  enqueue(task) {
+    this.writes = this.writes.then(task).catch((error) => {
+      this.stats.write_errors += 1;
+      console.error(`❌ Disk cache write failed: ${error.message}`);
+    });
+    return this.writes;
+  }
+
+  append(key, record) {
+    if (!this.ready) {
+      return;
+    }
+    const segment = this.segments.get(this.active.id);
+    if (segment.bytes > 0 && segment.bytes + record.length > SEGMENT_MAX_BYTES) {
+      this.openActive(this.active.id + 1);
+      this.maintain();
+      return this.append(key, record);
+    }
+    const active = this.segments.get(this.active.id);
+    fs.writeSync(this.active.fd, record);
+    const offset = active.bytes;
+    active.bytes += record.length;
+    this.track(key, {
+      segment: this.active.id,
+      offset,
+      size: record.length,
+      expiresAt: record.readDoubleBE(34),
+    });
+    this.scheduleSave();
+  }
+
+  /**
+   * Compact mostly-dead segments, then evict the oldest ones past the
+   * size budget (runs on the write queue)
+   */
+  maintain() {
+    this.enqueue(async () => {
+      for (const [id, segment] of [...this.segments].sort(([a], [b]) => a - b)) {
+        if (id !== this.active.id && segment.live < segment.bytes * COMPACT_LIVE_RATIO) {
+          await this.compact(id);
+        }
+      }
+      let total = [...this.segments.values()].reduce((sum, segment) => sum + segment.bytes, 0);
+      for (const id of [...this.segments.keys()].sort((a, b) => a - b)) {
+        if (total <= this.maxBytes || id === this.active.id) {
+          break;
+        }
+        total -= this.segments.get(id).bytes;
+        await this.drop(id);
+        this.stats.evicted_segments += 1;
+      }
+    });
+  }
+
+  async compact(id) {
+    const now = Date.now();
+    const live = [...this.index].filter(
+      ([, location]) => location.segment === id && location.expiresAt > now,
+    );
+    for (const [key, location] of live) {
+      const record = await this.read(location);
+      this.append(key, record);
+    }
+    await this.drop(id);
+    this.stats.compactions += 1;
+  }
+
+  async drop(id) {
+    for (const [key, location] of [...this.index]) {
+      if (location.segment === id) {
+        this.forget(key);
+      }
+    }
+    const reader = this.readers.get(id);
+    if (reader) {
+      this.readers.delete(id);
+      await reader.close();
+    }
+    this.segments.delete(id);
+    await fs.promises.unlink(path.join(this.dir, segmentName(id))).catch(() => {});
+    this.scheduleSave();
+  }
+
+  scheduleSave() {
+    if (this.saveTimer) {
+      return;
+    }
+    this.saveTimer = setTimeout(() => {
+      this.saveTimer = null;
+      this.enqueue(() => this.saveIndex());
+    }, INDEX_SAVE_DELAY_MS);
+    this.saveTimer.unref();
+  }
+
+  saveIndex() {
+    if (!this.ready) {
+      return;
+    }
+    const entries = [...this.index];
+    const buffer = Buffer.alloc(INDEX_HEADER + entries.length * INDEX_ENTRY);
+    buffer.write(INDEX_MAGIC, 0, "latin1");
+    buffer.writeUInt32BE(entries.length, 4);
+    buffer.writeUInt32BE(this.active.id, 8);
+    buffer.writeUInt32BE(this.segments.get(this.active.id).bytes, 12);
+    entries.forEach(([key, location], i) => {
+      const at = INDEX_HEADER + i * INDEX_ENTRY;
+      Buffer.from(key, "hex").copy(buffer, at);
+      buffer.writeUInt32BE(location.segment, at + 32);
+      buffer.writeUInt32BE(location.offset, at + 36);
+      buffer.writeUInt32BE(location.size, at + 40);
+      buffer.writeDoubleBE(location.expiresAt, at + 44);
+    });
+    const indexPath = path.join(this.dir, "index.bin");
+    fs.writeFileSync(`${indexPath}.tmp`, buffer);
+    fs.renameSync(`${indexPath}.tmp`, indexPath);
+  }
+
+  /**
+   * Save the index, close the segment files and release the directory
+   * (draining worker, shutdown). Synchronous so it can run from a signal
+   * handler; the read handles finish closing in the background.
+   */
+  close() {
+    this.closed = true;
+    clearTimeout(this.lockTimer);
+    clearTimeout(this.saveTimer);
+    if (!this.ready) {
+      return;
+    }
+    for (const reader of this.readers.values()) {
+      reader.close().catch(() => {});
+    }
+    this.readers.clear();
+    try {
+      this.saveIndex();
+      fs.closeSync(this.active.fd);
+      fs.unlinkSync(path.join(this.dir, "cache.lock"));
+    } catch (error) {
+      console.error(`❌ Disk cache close failed: ${error.message}`);
+    }
+    this.ready = false;
+  }
+
+  snapshot() {
+    return {
+      enabled: this.enabled,
+      ready: this.ready,
+      dir: this.dir,
+      entries: this.index.size,
+      segments: this.segments.size,
+      bytes: [...this.segments.values()].reduce((sum, segment) => sum + segment.bytes, 0),
+      max_bytes: this.maxBytes,
+      ...this.stats,
+      models: Object.fromEntries(this.models),
+    };
+  }
+}
+
+module.exports = { DiskCache };
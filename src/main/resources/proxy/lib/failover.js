@@ -0,0 +1,92 @@
+/**
+ * Per-model provider failover
+ *
+ * A model resolves to an ordered list of targets: its own endpoint first,
+ * then the fallbacks configured in models.json, each with its own provider,
+ * endpoint and upstream model id. A target is abandoned for the next one on
+ * a connection failure, a timeout or a 5xx response; since all of that is
+ * decided before a response is relayed, the client never sees a partial
+ * answer from a target that was given up on.
+ */
+
+/**
+ * Try targets in order until one answers with something other than a 5xx.
+ *
+ * attempt(target) resolves with an axios-like { status, headers, data } or
+ * rejects with a network error. The last target's outcome is returned (or
+ * thrown) as-is. Resolves with { response, target }.
+ */
+async function sendWithFailover(targets, attempt, { signal, onFailover } = {}) {
+  for (let index = 0; ; index++) {
+    const target = targets[index];
+    const last = index === targets.length - 1;
+    try {
+      const response = await attempt(target);
+      if (last || response.status < 500) {
+        return { response, target };
+      }
+      // Give the connection back before moving on
+      if (typeof response.data?.destroy === "function") {
+        response.data.destroy();
+      }
+      onFailover?.({ from: target, to: targets[index + 1], status: response.status });
+    } catch (error) {
+      if (last || signal?.aborted) {
+        throw error;
+      }
+      onFailover?.({ from: target, to: targets[index + 1], code: error.code || error.message });
+    }
+  }
+}
+
+/**
+ * Which target last served each model, for /health
+ */
+class RouteTable {
+  constructor() {
+    this.routes = new Map();
+  }
+
+  /**
+   * Note the target that answered; target.index is its position in the
+   * model's configured chain (0 = the model's own endpoint)
+   */
+  record(modelId, target) {
+    const route = this.routes.get(modelId) || { failovers: 0, last_failover_at: null };
+    if (target.index > 0) {
+      route.failovers += 1;
+      route.last_failover_at = new Date().toISOString();
+    }
+    route.index = target.index;
+    route.provider = target.provider;
+    route.model = target.model;
+    route.url = target.url;
+    this.routes.set(modelId, route);
+  }
+
+  /**
+   * Serving target per configured model (the primary until a request says
+   * otherwise), together with the whole chain
+   */
+  snapshot(targetsByModel) {
+    const result = {};
+    for (const [modelId, targets] of Object.entries(targetsByModel)) {
+      const route = this.routes.get(modelId);
+      const serving = route || { index: 0, ...targets[0], failovers: 0, last_failover_at: null };
+      result[modelId] = {
+        serving: {
+          index: serving.index,
+          provider: serving.provider,
+          model: serving.model,
+          url: serving.url,
+        },
+        failovers: serving.failovers,
+        last_failover_at: serving.last_failover_at,
+        chain: targets.map((target) => `${target.provider}:${target.model}`),
+      };
+    }
+    return result;
+  }
+}
+
+module.exports = { sendWithFailover, RouteTable };
@@ -0,0 +1,247 @@
+/**
+ * Hedged requests for latency-critical models
+ *
+ * Provider time-to-first-byte has a long tail: most answers start quickly,
+ * a few take many times the median. For models with hedging enabled, the
+ * proxy waits for the usual first byte (a configured percentile of the
+ * model's recent TTFT) and, if nothing has arrived by then, sends a second
+ * request. Whichever produces a first byte first is relayed to the client;
+ * the other is aborted so the provider stops generating. TTFT and the hedge
+ * delay are counted from when a request leaves the proxy, so time spent
+ * waiting for a concurrency slot or rate-limit budget doesn't look like a
+ * slow provider.
+ */
+
+// Recent TTFT samples kept per model
+const MAX_SAMPLES = 200;
+// Below this many samples, use INITIAL_DELAY_MS instead of a percentile
+const MIN_SAMPLES = 20;
+const INITIAL_DELAY_MS = 3000;
+// Never hedge sooner than this (doubles load for no gain) or later than that
+const MIN_DELAY_MS = 250;
+const MAX_DELAY_MS = 15000;
+
+/**
+ * Rolling time-to-first-byte per model, and hedge counters for /health
+ */
+class LatencyTracker {
+  constructor() {
+    this.models = new Map();
+  }
+
+  entry(modelId) {
+    let entry = this.models.get(modelId);
+    if (!entry) {
+      entry = { samples: [], requests: 0, hedged: 0, wins: 0 };
+      this.models.set(modelId, entry);
+    }
+    return entry;
+  }
+
+  record(modelId, ttftMs) {
+    const { samples } = this.entry(modelId);
+    samples.push(ttftMs);
+    if (samples.length > MAX_SAMPLES) {
+      samples.shift();
+    }
+  }
+
+  /**
+   * How long to wait for a first byte before hedging
+   */
+  delayMs(modelId, percentile) {
+    const { samples } = this.entry(modelId);
+    if (samples.length < MIN_SAMPLES) {
+      return INITIAL_DELAY_MS;
+    }
+    const sorted = [...samples].sort((a, b) => a - b);
+    const index = Math.min(
+      sorted.length - 1,
+      Math.floor((percentile / 100) * sorted.length),
+    );
+    return Math.min(MAX_DELAY_MS, Math.max(MIN_DELAY_MS, sorted[index]));
+  }
+
+  snapshot(percentiles) {
+    const result = {};
+    for (const [modelId, entry] of this.models) {
+      const percentile = percentiles[modelId];
+      result[modelId] = {
+        samples: entry.samples.length,
+        percentile: percentile ?? null,
+        delay_ms: percentile ? this.delayMs(modelId, percentile) : null,
+        requests: entry.requests,
+        hedged: entry.hedged,
+        wins: entry.wins,
+        hedge_rate: rate(entry.hedged, entry.requests),
+        win_rate: rate(entry.wins, entry.hedged),
+      };
+    }
+    return result;
+  }
+}
+
+function rate(count, total) {
+  return total > 0 ? Math.round((count / total) * 1000) / 1000 : null;
+}
+
+/**
+ * Resolves once a streamed body has data buffered (without consuming it),
+ * so "first byte" means the first token rather than just the headers.
+ * Aborting `signal` while waiting destroys the stream.
+ */
+function firstByte(stream, signal) {
+  return new Promise((resolve, reject) => {
+    if (stream.readableLength > 0 || stream.readableEnded) {
+      resolve();
+      return;
+    }
+    const cleanup = () => {
+      stream.removeListener("readable", onReadable);
+      stream.removeListener("error", onError);
+      signal?.removeEventListener("abort", onAbort);
+    };
+    const onReadable = () => {
+      cleanup();
+      resolve();
+    };
+    const onError = (error) => {
+      cleanup();
+      reject(error);
+    };
+    const onAbort = () => {
+      cleanup();
+      stream.destroy();
+      reject(signal.reason);
+    };
+    if (signal?.aborted) {
+      onAbort();
+      return;
+    }
+    stream.on("readable", onReadable);
+    stream.once("error", onError);
+    signal?.addEventListener("abort", onAbort, { once: true });
+  });
+}
+
+/**
+ * Controller that aborts along with the request's own signal
+ */
+function childController(signal) {
+  const controller = new AbortController();
+  if (signal?.aborted) {
+    controller.abort(signal.reason);
+  } else {
+    signal?.addEventListener("abort", () => controller.abort(signal.reason), {
+      once: true,
+    });
+  }
+  return controller;
+}
+
+function discard(response) {
+  if (typeof response?.data?.destroy === "function") {
+    response.data.destroy();
+  }
+}
+
+/**
+ * Run primary(signal, sent), and hedge(signal, sent) as well if primary has
+ * not resolved delayMs after it was sent.
+ *
+ * Each calls sent() whenever it actually sends a request upstream (after
+ * any local queueing); the hedge timer starts at the primary's first send.
+ * Both resolve with an axios-like { status, headers, data } once a first
+ * byte is available. The first one below 500 wins and the other is aborted;
+ * if both fail, the primary's outcome is returned (or thrown). The hedge is
+ * skipped when canHedge() says no at the time it would be sent. Resolves
+ * with { response, hedged, winner, ttftMs, primaryTtftMs } where winner is
+ * "primary" or "hedge" and ttftMs runs from the winner's last send to its
+ * first byte. primaryTtftMs is the primary's TTFT as far as it is known:
+ * when the hedge wins while the primary is still waiting, how long it has
+ * waited so far (a lower bound). It is the sample to keep for the delay, so
+ * a slow primary still counts when a hedge cuts it short.
+ */
+function hedged(primary, hedge, { delayMs, signal, onHedge, canHedge } = {}) {
+  return new Promise((resolve, reject) => {
+    const attempts = {
+      primary: { controller: childController(signal), done: false, outcome: null, sentAt: null },
+      hedge: { controller: null, done: false, outcome: null, sentAt: null },
+    };
+    let settled = false;
+    let timer = null;
+
+    const finish = (winner, outcome) => {
+      settled = true;
+      clearTimeout(timer);
+      const loser = attempts[winner === "primary" ? "hedge" : "primary"];
+      loser.controller?.abort();
+      discard(loser.outcome?.response);
+      const isHedged = attempts.hedge.controller !== null;
+      if (outcome.error) {
+        reject(outcome.error);
+      } else {
+        const now = Date.now();
+        const ttftMs = now - (attempts[winner].sentAt ?? now);
+        const primary = attempts.primary;
+        const primaryTtftMs =
+          winner === "hedge" && !primary.done && primary.sentAt !== null
+            ? Math.max(now - primary.sentAt, ttftMs)
+            : ttftMs;
+        resolve({ response: outcome.response, hedged: isHedged, winner, ttftMs, primaryTtftMs });
+      }
+    };
+
+    const onOutcome = (name, outcome) => {
+      const attempt = attempts[name];
+      attempt.done = true;
+      attempt.outcome = outcome;
+      if (settled) {
+        discard(outcome.response);
+        return;
+      }
+      if (!outcome.error && outcome.response.status < 500) {
+        finish(name, outcome);
+        return;
+      }
+      const other = attempts[name === "primary" ? "hedge" : "primary"];
+      const otherRunning = other.controller !== null && !other.done;
+      if (name === "primary" && attempts.hedge.controller === null) {
+        // Failed before the hedge was needed: nothing to wait for
+        finish("primary", outcome);
+      } else if (!otherRunning) {
+        // Both failed; report the primary's outcome
+        finish("primary", attempts.primary.outcome);
+      }
+    };
+
+    const armHedge = () => {
+      timer = setTimeout(() => {
+        if (settled || signal?.aborted || (canHedge && !canHedge())) {
+          return;
+        }
+        attempts.hedge.controller = childController(signal);
+        onHedge?.({ delayMs });
+        launch("hedge", hedge);
+      }, delayMs);
+    };
+
+    const launch = (name, call) => {
+      const attempt = attempts[name];
+      const sent = () => {
+        if (name === "primary" && attempt.sentAt === null) {
+          armHedge();
+        }
+        attempt.sentAt = Date.now();
+      };
+      call(attempt.controller.signal, sent).then(
+        (response) => onOutcome(name, { response }),
+        (error) => onOutcome(name, { error }),
+      );
+    };
+
+    launch("primary", primary);
+  });
+}
+
+module.exports = { hedged, firstByte, LatencyTracker };
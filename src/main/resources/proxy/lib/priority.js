@@ -0,0 +1,174 @@
+/**
+ * Request classes and weighted-fair queueing
+ *
+ * Rider sends every feature through /v1/chat/completions, so the proxy
+ * guesses which one a request comes from (the ids match RiderAIContext in
+ * the plugin) from its shape: system prompt fingerprints, how many messages
+ * it carries and how big an answer it asks for. When requests have to wait
+ * for provider capacity, each class gets its own queue and the queues are
+ * served in proportion to their weights, so a batch of commit messages
+ * can't push an interactive chat turn to the back of the line.
+ */
+
+// Share of the provider's capacity each class gets while all are waiting
+const CONTEXT_WEIGHTS = {
+  chat: 8,
+  inline_edit: 8,
+  auto_apply: 4,
+  naming: 2,
+  commits: 1,
+};
+
+const DEFAULT_CONTEXT = "chat";
+
+// Checked in order against the system prompt (and the last user message)
+const FINGERPRINTS = [
+  ["commits", /commit message|git commit|summari[sz]e (the )?(staged )?(changes|diff)/i],
+  ["naming", /(suggest|propose|generate|better) (a |some )?names?\b|rename (the )?(variable|function|method|class|symbol)/i],
+  ["auto_apply", /apply (the |these )?(changes|edits|suggestion)|merge (the )?(snippet|code block) into/i],
+  ["inline_edit", /(modify|rewrite|edit|refactor|fix) (the )?(selected|following|given) code|<selection>|quick edit/i],
+];
+
+function textOf(content) {
+  if (typeof content === "string") {
+    return content;
+  }
+  if (Array.isArray(content)) {
+    return content
+      .map((part) => (typeof part === "string" ? part : part?.text || ""))
+      .join("\n");
+  }
+  return "";
+}
+
+/**
+ * Best guess at the Rider feature behind a chat completion request
+ */
+function classifyRequest(body) {
+  const messages = Array.isArray(body.messages) ? body.messages : [];
+  const system = messages
+    .filter((message) => message.role === "system")
+    .map((message) => textOf(message.content))
+    .join("\n");
+  const lastUser = textOf(
+    [...messages].reverse().find((message) => message.role === "user")?.content,
+  );
+  // Only the first part of the user message: that's where the instruction
+  // is, the rest is usually pasted code or a diff
+  const fingerprint = `${system}\n${lastUser.substring(0, 500)}`;
+
+  for (const [context, pattern] of FINGERPRINTS) {
+    if (pattern.test(fingerprint)) {
+      return context;
+    }
+  }
+
+  const turns = messages.filter((message) => message.role !== "system").length;
+  const maxTokens = Number(body.max_tokens ?? body.max_completion_tokens) || 0;
+  if (turns <= 1 && maxTokens > 0 && maxTokens <= 64) {
+    // A one-shot request for a few tokens: a name, a label
+    return "naming";
+  }
+  return DEFAULT_CONTEXT;
+}
+
+/**
+ * Queue with one FIFO per class, served by stride scheduling: each class
+ * has a virtual "pass" that advances by 1/weight per item served, and the
+ * non-empty class with the lowest pass goes next
+ */
+class WeightedFairQueue {
+  constructor(weights = CONTEXT_WEIGHTS) {
+    this.weights = weights;
+    this.classes = new Map();
+    this.virtualTime = 0;
+    this.length = 0;
+  }
+
+  lane(name) {
+    let lane = this.classes.get(name);
+    if (!lane) {
+      lane = {
+        name,
+        items: [],
+        pass: this.virtualTime,
+        queued: 0,
+        served: 0,
+        wait_ms: 0,
+        max_wait_ms: 0,
+      };
+      this.classes.set(name, lane);
+    }
+    return lane;
+  }
+
+  push(name, item) {
+    const lane = this.lane(this.weights[name] ? name : DEFAULT_CONTEXT);
+    if (lane.items.length === 0) {
+      // A class that was idle doesn't get to bank credit for it
+      lane.pass = Math.max(lane.pass, this.virtualTime);
+    }
+    lane.items.push({ item, enqueuedAt: Date.now() });
+    lane.queued += 1;
+    this.length += 1;
+  }
+
+  peek() {
+    let next = null;
+    for (const lane of this.classes.values()) {
+      if (lane.items.length > 0 && (!next || lane.pass < next.pass)) {
+        next = lane;
+      }
+    }
+    return next;
+  }
+
+  shift() {
+    const lane = this.peek();
+    if (!lane) {
+      return undefined;
+    }
+    const { item, enqueuedAt } = lane.items.shift();
+    this.virtualTime = lane.pass;
+    lane.pass += 1 / this.weights[lane.name];
+    lane.served += 1;
+    const waited = Date.now() - enqueuedAt;
+    lane.wait_ms += waited;
+    lane.max_wait_ms = Math.max(lane.max_wait_ms, waited);
+    this.length -= 1;
+    return item;
+  }
+
+  /**
+   * Drop an item that gave up waiting (timeout, client gone)
+   */
+  remove(item) {
+    for (const lane of this.classes.values()) {
+      const index = lane.items.findIndex((entry) => entry.item === item);
+      if (index !== -1) {
+        lane.items.splice(index, 1);
+        this.length -= 1;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  snapshot() {
+    return Object.fromEntries(
+      [...this.classes].map(([name, lane]) => [
+        name,
+        {
+          weight: this.weights[name],
+          depth: lane.items.length,
+          queued: lane.queued,
+          served: lane.served,
+          avg_wait_ms: lane.served > 0 ? Math.round(lane.wait_ms / lane.served) : null,
+          max_wait_ms: lane.max_wait_ms,
+        },
+      ]),
+    );
+  }
+}
+
+module.exports = { classifyRequest, WeightedFairQueue, CONTEXT_WEIGHTS };
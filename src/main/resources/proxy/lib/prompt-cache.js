@@ -0,0 +1,249 @@
+/**
+ * Request shaping for provider-side prompt caches
+ *
+ * Rider resends the whole conversation, system prompt included, on every
+ * turn. Providers can skip re-reading a prefix they have seen recently, but
+ * only if it is byte-for-byte the same: DeepSeek and OpenAI cache prefixes
+ * automatically, Anthropic caches up to the cache_control breakpoints the
+ * request marks. Before a body goes upstream it is normalized so the prefix
+ * stays stable between turns (canonical key order, LF line endings, clock
+ * times in system prompts cut to the date) and given the provider's hints:
+ * breakpoints on the system prompt and the conversation so far for
+ * Anthropic, a prompt_cache_key that keeps a conversation on the same cache
+ * for OpenAI. The usage of every answer tells how many prompt tokens were
+ * read from the cache; those counts are kept per provider.
+ *
+ * Turned off with PROXYME_PROMPT_CACHE_HINTS=false.
+ */
+const crypto = require("crypto");
+const { StringDecoder } = require("string_decoder");
+
+// Anthropic won't cache a prefix shorter than this; a breakpoint before it
+// would only cost a cache write
+const MIN_CACHEABLE_TOKENS = 1024;
+const MAX_BREAKPOINTS = 4;
+
+// An ISO 8601 date with a time of day; the time is dropped from system
+// prompts so the prefix only changes once a day
+const TIMESTAMP = /\b(\d{4}-\d{2}-\d{2})[T ]\d{2}:\d{2}(?::\d{2}(?:\.\d+)?)?(?:Z|[+-]\d{2}:?\d{2})?\b/g;
+
+/**
+ * Copy of a JSON value with object keys sorted, so equal content always
+ * serializes to the same bytes
+ */
+function sortKeys(value) {
+  if (Array.isArray(value)) {
+    return value.map(sortKeys);
+  }
+  if (value && typeof value === "object") {
+    return Object.fromEntries(
+      Object.keys(value)
+        .sort()
+        .map((key) => [key, sortKeys(value[key])]),
+    );
+  }
+  return value;
+}
+
+function normalizeText(text, role) {
+  const normalized = text.replace(/\r\n?/g, "\n");
+  return role === "system" ? normalized.replace(TIMESTAMP, "$1") : normalized;
+}
+
+function normalizeContent(content, role) {
+  if (typeof content === "string") {
+    return normalizeText(content, role);
+  }
+  if (Array.isArray(content)) {
+    return content.map((part) =>
+      typeof part?.text === "string" ? { ...part, text: normalizeText(part.text, role) } : part,
+    );
+  }
+  return content;
+}
+
+function approxTokens(message) {
+  return Math.ceil(JSON.stringify(message.content ?? "").length / 4);
+}
+
+/**
+ * The message with a cache_control breakpoint on its last content part
+ * (string content becomes a single text part)
+ */
+function withBreakpoint(message) {
+  const parts =
+    typeof message.content === "string"
+      ? [{ type: "text", text: message.content }]
+      : message.content.map((part) => ({ ...part }));
+  parts[parts.length - 1].cache_control = { type: "ephemeral" };
+  return { ...message, content: parts };
+}
+
+/**
+ * Anthropic breakpoints: end of the system prompt, end of the conversation
+ * before the latest user turn (what the previous turn wrote) and the end of
+ * the request (what the next turn will read), where each prefix is long
+ * enough to be cached
+ */
+function placeBreakpoints(messages) {
+  const hasContent = (index) => {
+    const content = messages[index]?.content;
+    return typeof content === "string" ? content.length > 0 : Array.isArray(content) && content.length > 0;
+  };
+  const lastIndexWhere = (predicate, before = messages.length) => {
+    for (let i = before - 1; i >= 0; i--) {
+      if (predicate(messages[i]) && hasContent(i)) {
+        return i;
+      }
+    }
+    return -1;
+  };
+
+  const lastUser = lastIndexWhere((message) => message.role === "user");
+  const candidates = [
+    lastIndexWhere((message) => message.role === "system"),
+    lastIndexWhere((message) => message.role !== "system", lastUser),
+    lastIndexWhere(() => true),
+  ];
+
+  const prefixTokens = [];
+  let total = 0;
+  for (const message of messages) {
+    total += approxTokens(message);
+    prefixTokens.push(total);
+  }
+  const marked = new Set(
+    candidates
+      .filter((index) => index >= 0 && prefixTokens[index] >= MIN_CACHEABLE_TOKENS)
+      .slice(0, MAX_BREAKPOINTS),
+  );
+  return messages.map((message, i) => (marked.has(i) ? withBreakpoint(message) : message));
+}
+
+/**
+ * Cache key for OpenAI: the model and system prompt, shared by every turn
+ * of a conversation (and by conversations with the same instructions)
+ */
+function prefixKey(body) {
+  const system = body.messages.filter((message) => message.role === "system");
+  return crypto
+    .createHash("sha256")
+    .update(JSON.stringify([body.model, system]))
+    .digest("hex")
+    .substring(0, 32);
+}
+
+/**
+ * The body to send to provider: normalized, with its prompt-cache hints
+ */
+function shapeRequest(body, provider) {
+  if (!Array.isArray(body.messages)) {
+    return body;
+  }
+  const shaped = {
+    ...body,
+    messages: body.messages.map((message) =>
+      sortKeys({ ...message, content: normalizeContent(message.content, message.role) }),
+    ),
+  };
+  if (Array.isArray(body.tools)) {
+    shaped.tools = sortKeys(body.tools);
+  }
+  if (provider === "anthropic") {
+    shaped.messages = placeBreakpoints(shaped.messages);
+  } else if (provider === "openai" && shaped.prompt_cache_key === undefined) {
+    shaped.prompt_cache_key = prefixKey(shaped);
+  }
+  return shaped;
+}
+
+/**
+ * Picks the last usage object out of an SSE stream as it is relayed
+ */
+class UsageTap {
+  constructor() {
+    this.decoder = new StringDecoder("utf8");
+    this.pending = "";
+    this.usage = null;
+  }
+
+  write(chunk) {
+    const lines = (this.pending + this.decoder.write(chunk)).split("\n");
+    this.pending = lines.pop();
+    for (const line of lines) {
+      if (line.startsWith("data:") && line.includes('"usage"')) {
+        try {
+          this.usage = JSON.parse(line.slice(5)).usage || this.usage;
+        } catch (error) {
+          // Not JSON after all
+        }
+      }
+    }
+  }
+}
+
+/**
+ * Prompt-cache token counts per provider, from the usage of each answer
+ * (DeepSeek, OpenAI and Anthropic each report them differently)
+ */
+class PromptCacheStats {
+  constructor() {
+    this.providers = new Map();
+  }
+
+  /**
+   * Count one answer; returns { prompt, cached, written } or null when the
+   * usage says nothing about the prompt
+   */
+  record(provider, usage) {
+    if (!usage) {
+      return null;
+    }
+    const cached =
+      usage.prompt_cache_hit_tokens ??
+      usage.prompt_tokens_details?.cached_tokens ??
+      usage.cache_read_input_tokens ??
+      0;
+    const written = usage.cache_creation_input_tokens ?? 0;
+    // Anthropic's input_tokens leaves out what was read from or written to
+    // the cache; prompt_tokens elsewhere includes it
+    const prompt =
+      typeof usage.prompt_tokens === "number"
+        ? usage.prompt_tokens
+        : typeof usage.input_tokens === "number"
+          ? usage.input_tokens + cached + written
+          : null;
+    if (prompt === null) {
+      return null;
+    }
+    const counts = { prompt, cached, written };
+    let entry = this.providers.get(provider);
+    if (!entry) {
+      entry = { requests: 0, hits: 0, prompt_tokens: 0, cached_tokens: 0, cache_write_tokens: 0 };
+      this.providers.set(provider, entry);
+    }
+    entry.requests += 1;
+    entry.hits += counts.cached > 0 ? 1 : 0;
+    entry.prompt_tokens += counts.prompt;
+    entry.cached_tokens += counts.cached;
+    entry.cache_write_tokens += counts.written;
+    return counts;
+  }
+
+  snapshot() {
+    return Object.fromEntries(
+      [...this.providers].map(([provider, entry]) => [
+        provider,
+        {
+          ...entry,
+          cached_ratio:
+            entry.prompt_tokens > 0
+              ? Math.round((entry.cached_tokens / entry.prompt_tokens) * 1000) / 1000
+              : null,
+        },
+      ]),
+    );
+  }
+}
+
+module.exports = { shapeRequest, UsageTap, PromptCacheStats };
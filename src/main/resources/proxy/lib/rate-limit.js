@@ -0,0 +1,285 @@
+/**
+ * Token buckets per API key, kept in step with the provider's rate-limit
+ * headers
+ *
+ * OpenAI-style providers send x-ratelimit-{limit,remaining,reset}-{requests,
+ * tokens}, Anthropic sends anthropic-ratelimit-{requests,tokens}-{limit,
+ * remaining,reset}. Every response resets the matching bucket to what the
+ * provider reports (minus what we have sent since), and the bucket refills
+ * at the rate that brings it back to the limit by the reported reset time.
+ * Calls reserve one request and an estimate of their tokens up front and
+ * wait out any deficit, so we stay just under the limit instead of paying a
+ * round trip for a guaranteed 429. Until a provider has sent its headers,
+ * nothing is paced.
+ */
+
+// Wait at most this long for budget; beyond it, fail with ERATELIMITED
+const MAX_PACE_MS = 20000;
+// Keep this share of each limit in reserve for requests from other clients
+const HEADROOM = 0.02;
+// Assumed window when a provider reports limits without a reset time
+const DEFAULT_WINDOW_MS = 60000;
+
+const RESOURCES = ["requests", "tokens"];
+
+/**
+ * Milliseconds from a reset header: seconds ("20"), a Go-style duration
+ * ("6m0s", "1.5s", "20ms") or a timestamp (Anthropic, RFC 3339)
+ */
+function parseResetMs(value) {
+  if (value === undefined || value === null || value === "") {
+    return null;
+  }
+  const text = String(value).trim();
+  if (/^\d+(\.\d+)?$/.test(text)) {
+    return Number(text) * 1000;
+  }
+  const units = { h: 3600000, m: 60000, s: 1000, ms: 1 };
+  const parts = [...text.matchAll(/(\d+(?:\.\d+)?)(ms|h|m|s)/g)];
+  if (parts.length > 0 && parts.map((part) => part[0]).join("") === text) {
+    return parts.reduce((sum, [, amount, unit]) => sum + Number(amount) * units[unit], 0);
+  }
+  const date = Date.parse(text);
+  return Number.isNaN(date) ? null : Math.max(0, date - Date.now());
+}
+
+function header(headers, name) {
+  if (!headers) {
+    return undefined;
+  }
+  return typeof headers.get === "function" ? headers.get(name) : headers[name];
+}
+
+/**
+ * { requests: { limit, remaining, resetMs }, tokens: {...} } from response
+ * headers; resources the provider didn't report are left out
+ */
+function parseRateLimitHeaders(headers) {
+  const result = {};
+  for (const resource of RESOURCES) {
+    const names = [
+      [`x-ratelimit-limit-${resource}`, `x-ratelimit-remaining-${resource}`, `x-ratelimit-reset-${resource}`],
+      [
+        `anthropic-ratelimit-${resource}-limit`,
+        `anthropic-ratelimit-${resource}-remaining`,
+        `anthropic-ratelimit-${resource}-reset`,
+      ],
+    ];
+    for (const [limitName, remainingName, resetName] of names) {
+      const limit = Number(header(headers, limitName));
+      const remaining = Number(header(headers, remainingName));
+      if (Number.isFinite(limit) && limit > 0 && Number.isFinite(remaining)) {
+        result[resource] = {
+          limit,
+          remaining,
+          resetMs: parseResetMs(header(headers, resetName)),
+        };
+        break;
+      }
+    }
+  }
+  return result;
+}
+
+class TokenBucket {
+  constructor() {
+    this.capacity = 0;
+    this.tokens = 0;
+    this.refillPerMs = 0;
+    this.outstanding = 0; // reserved by calls that haven't been answered
+    this.updatedAt = Date.now();
+    this.correctedAt = null;
+  }
+
+  refill(now = Date.now()) {
+    this.tokens = Math.min(
+      this.capacity,
+      this.tokens + (now - this.updatedAt) * this.refillPerMs,
+    );
+    this.updatedAt = now;
+  }
+
+  /**
+   * Take `amount` (possibly going into debt); returns the wait in ms until
+   * the debt is paid off and the headroom is back
+   */
+  reserve(amount) {
+    this.refill();
+    this.tokens -= amount;
+    this.outstanding += amount;
+    const floor = this.capacity * HEADROOM;
+    if (this.tokens >= floor) {
+      return 0;
+    }
+    return this.refillPerMs > 0 ? Math.ceil((floor - this.tokens) / this.refillPerMs) : Infinity;
+  }
+
+  /**
+   * Undo a reservation that was never sent
+   */
+  refund(amount) {
+    this.tokens += amount;
+    this.settle(amount);
+  }
+
+  settle(amount) {
+    this.outstanding = Math.max(0, this.outstanding - amount);
+  }
+
+  /**
+   * Adopt the provider's view: `remaining` as of this response, back to
+   * `limit` after resetMs
+   */
+  correct({ limit, remaining, resetMs }) {
+    const now = Date.now();
+    this.capacity = limit;
+    this.tokens = Math.min(limit, remaining) - this.outstanding;
+    const windowMs = resetMs && resetMs > 0 ? resetMs : DEFAULT_WINDOW_MS;
+    // Refill to full by the reset time; a full bucket still refills at
+    // limit per window so the rate is never zero
+    this.refillPerMs = Math.max(limit - remaining, 0) / windowMs || limit / DEFAULT_WINDOW_MS;
+    this.updatedAt = now;
+    this.correctedAt = now;
+  }
+
+  snapshot() {
+    this.refill();
+    return {
+      limit: this.capacity,
+      remaining: Math.floor(this.tokens),
+      outstanding: Math.round(this.outstanding),
+      refill_per_s: Math.round(this.refillPerMs * 1000 * 100) / 100,
+      corrected_at: this.correctedAt ? new Date(this.correctedAt).toISOString() : null,
+    };
+  }
+}
+
+function sleep(ms, signal) {
+  return new Promise((resolve, reject) => {
+    if (signal?.aborted) {
+      reject(signal.reason);
+      return;
+    }
+    const onAbort = () => {
+      clearTimeout(timer);
+      reject(signal.reason);
+    };
+    const timer = setTimeout(() => {
+      signal?.removeEventListener("abort", onAbort);
+      resolve();
+    }, ms);
+    signal?.addEventListener("abort", onAbort, { once: true });
+  });
+}
+
+class RateLimiters {
+  constructor() {
+    this.keys = new Map();
+  }
+
+  get(key) {
+    let entry = this.keys.get(key);
+    if (!entry) {
+      entry = { buckets: {}, paced: 0, paced_ms: 0, rejected: 0, throttled: 0 };
+      this.keys.set(key, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Run one upstream call within the key's request and token budgets.
+   *
+   * `tokens` is the caller's estimate of what the call will use. Waits for
+   * budget (rejecting with ERATELIMITED if that would take more than
+   * MAX_PACE_MS), then corrects the buckets from the response headers.
+   */
+  async run(key, call, { tokens = 0, signal } = {}) {
+    const entry = this.get(key);
+    const reserved = Object.keys(entry.buckets);
+    // A call bigger than the whole bucket can never fit; let the provider
+    // judge it rather than waiting forever
+    const amounts = Object.fromEntries(
+      reserved.map((resource) => [
+        resource,
+        Math.min(resource === "requests" ? 1 : tokens, entry.buckets[resource].capacity),
+      ]),
+    );
+
+    const waitMs = Math.max(
+      0,
+      ...reserved.map((resource) => entry.buckets[resource].reserve(amounts[resource])),
+    );
+    const refund = () =>
+      reserved.forEach((resource) => entry.buckets[resource].refund(amounts[resource]));
+
+    if (waitMs > MAX_PACE_MS) {
+      refund();
+      entry.rejected += 1;
+      const retryAfterMs = Number.isFinite(waitMs) ? waitMs : DEFAULT_WINDOW_MS;
+      const error = new Error(
+        `Rate limit budget for ${key} exhausted; retry in ${Math.ceil(retryAfterMs / 1000)}s`,
+      );
+      error.code = "ERATELIMITED";
+      error.retryAfterMs = retryAfterMs;
+      throw error;
+    }
+    if (waitMs > 0) {
+      entry.paced += 1;
+      entry.paced_ms += waitMs;
+      try {
+        await sleep(waitMs, signal);
+      } catch (error) {
+        refund();
+        throw error;
+      }
+    }
+
+    let response;
+    try {
+      response = await call();
+    } catch (error) {
+      reserved.forEach((resource) => entry.buckets[resource].settle(amounts[resource]));
+      throw error;
+    }
+
+    reserved.forEach((resource) => entry.buckets[resource].settle(amounts[resource]));
+    const limits = parseRateLimitHeaders(response.headers);
+    for (const [resource, reported] of Object.entries(limits)) {
+      if (!entry.buckets[resource]) {
+        entry.buckets[resource] = new TokenBucket();
+      }
+      entry.buckets[resource].correct(reported);
+    }
+    if (response.status === 429) {
+      entry.throttled += 1;
+    }
+    return response;
+  }
+
+  snapshot() {
+    const result = {};
+    for (const [key, entry] of this.keys) {
+      result[key] = {
+        ...Object.fromEntries(
+          Object.entries(entry.buckets).map(([resource, bucket]) => [resource, bucket.snapshot()]),
+        ),
+        paced: entry.paced,
+        paced_ms: entry.paced_ms,
+        rejected: entry.rejected,
+        throttled: entry.throttled,
+      };
+    }
+    return result;
+  }
+}
+
+/**
+ * Rough token count for a chat request: ~4 characters per token for the
+ * prompt, plus the completion budget the provider will hold against it
+ */
+function estimateTokens(body) {
+  const promptChars = JSON.stringify(body.messages || []).length;
+  return Math.ceil(promptChars / 4) + (Number(body.max_tokens) || 0);
+}
+
+module.exports = { RateLimiters, estimateTokens, parseResetMs, parseRateLimitHeaders };
@@ -0,0 +1,273 @@
+/**
+ * Exact-match cache of deterministic completions
+ *
+ * Models that opt in (and only for requests at or below their temperature
+ * threshold) have successful answers kept in memory, keyed by a hash of the
+ * canonical request body as it would be sent upstream - model, messages and
+ * every effective parameter, customBodyParams included - except `stream`.
+ * A streamed answer is kept as its SSE bytes and a plain one as JSON; either
+ * can serve either kind of request, converted on the way out. Entries expire
+ * after a TTL and the least recently used are evicted past a byte budget.
+ * Behind the memory tier sits an optional disk tier (see disk-cache.js) that
+ * outlives the process; answers found there are promoted back into memory.
+ *
+ * Tuned through environment variables set by the plugin:
+ *   PROXYME_RESPONSE_CACHE_MAX_BYTES  memory budget, 0 disables (64 MB)
+ *   PROXYME_RESPONSE_CACHE_TTL_MS     entry lifetime (1 hour)
+ */
+const crypto = require("crypto");
+
+// Parameters that change how an answer is delivered, not what it is
+const TRANSPORT_PARAMS = new Set(["stream", "stream_options"]);
+
+/**
+ * JSON with object keys sorted, so equal requests hash equally
+ */
+function canonicalJson(value) {
+  if (Array.isArray(value)) {
+    return `[${value.map(canonicalJson).join(",")}]`;
+  }
+  if (value && typeof value === "object") {
+    return `{${Object.keys(value)
+      .filter((key) => value[key] !== undefined)
+      .sort()
+      .map((key) => `${JSON.stringify(key)}:${canonicalJson(value[key])}`)
+      .join(",")}}`;
+  }
+  return JSON.stringify(value);
+}
+
+/**
+ * Plain chat.completion rebuilt from the SSE chunks of a streamed answer
+ */
+function sseToCompletion(sse) {
+  let completion = null;
+  const contents = [];
+  for (const line of sse.split("\n")) {
+    if (!line.startsWith("data:")) {
+      continue;
+    }
+    const data = line.slice(5).trim();
+    if (data === "" || data === "[DONE]") {
+      continue;
+    }
+    let chunk;
+    try {
+      chunk = JSON.parse(data);
+    } catch (error) {
+      continue;
+    }
+    completion = completion || {
+      id: chunk.id,
+      object: "chat.completion",
+      created: chunk.created,
+      model: chunk.model,
+      choices: [{ index: 0, message: { role: "assistant", content: "" }, finish_reason: null }],
+    };
+    const choice = chunk.choices?.[0];
+    if (choice?.delta?.content) {
+      contents.push(choice.delta.content);
+    }
+    if (choice?.finish_reason) {
+      completion.choices[0].finish_reason = choice.finish_reason;
+    }
+    if (chunk.usage) {
+      completion.usage = chunk.usage;
+    }
+  }
+  if (completion) {
+    completion.choices[0].message.content = contents.join("");
+    // Only complete streams are cached
+    completion.choices[0].finish_reason ??= "stop";
+  }
+  return completion;
+}
+
+/**
+ * SSE stream equivalent to a plain chat.completion: one chunk carrying the
+ * whole message, then the finish reason (with usage), then [DONE]
+ */
+function completionToSse(completion) {
+  const base = {
+    id: completion.id,
+    object: "chat.completion.chunk",
+    created: completion.created,
+    model: completion.model,
+  };
+  const choice = completion.choices?.[0] || {};
+  const events = [
+    {
+      ...base,
+      choices: [
+        {
+          index: 0,
+          delta: { role: "assistant", content: choice.message?.content ?? "" },
+          finish_reason: null,
+        },
+      ],
+    },
+    {
+      ...base,
+      choices: [{ index: 0, delta: {}, finish_reason: choice.finish_reason ?? "stop" }],
+      ...(completion.usage ? { usage: completion.usage } : {}),
+    },
+  ];
+  return `${events.map((event) => `data: ${JSON.stringify(event)}\n\n`).join("")}data: [DONE]\n\n`;
+}
+
+/**
+ * A kept answer ({ sse } or { completion }) in the requested shape
+ */
+function shape({ sse, completion }, stream) {
+  return stream ? sse ?? completionToSse(completion) : completion ?? sseToCompletion(sse);
+}
+
+class ResponseCache {
+  constructor({ maxBytes = 64 * 1024 * 1024, ttlMs = 3600000, disk = null } = {}) {
+    this.maxBytes = maxBytes;
+    this.ttlMs = ttlMs;
+    this.disk = disk;
+    // Map iteration order doubles as recency: oldest first
+    this.entries = new Map();
+    this.bytes = 0;
+    this.stats = { hits: 0, misses: 0, stores: 0, evictions: 0, expired: 0 };
+  }
+
+  static fromEnv(env = process.env, { disk = null } = {}) {
+    return new ResponseCache({
+      maxBytes: parseInt(env.PROXYME_RESPONSE_CACHE_MAX_BYTES || String(64 * 1024 * 1024), 10),
+      ttlMs: parseInt(env.PROXYME_RESPONSE_CACHE_TTL_MS || "3600000", 10),
+      disk,
+    });
+  }
+
+  get enabled() {
+    return this.maxBytes > 0 || Boolean(this.disk?.enabled);
+  }
+
+  /**
+   * Largest answer worth capturing for either tier
+   */
+  get maxEntryBytes() {
+    return Math.max(this.maxBytes, this.disk?.enabled ? this.disk.maxBytes : 0) / 4;
+  }
+
+  /**
+   * Cache key for an upstream request body
+   */
+  key(body) {
+    const identity = Object.fromEntries(
+      Object.entries(body).filter(([name]) => !TRANSPORT_PARAMS.has(name)),
+    );
+    return crypto.createHash("sha256").update(canonicalJson(identity)).digest("hex");
+  }
+
+  /**
+   * The cached answer in the requested shape - SSE text when `stream`,
+   * else a chat.completion object - or null
+   */
+  get(key, { stream }) {
+    const entry = this.entries.get(key);
+    if (entry && Date.now() > entry.expiresAt) {
+      this.delete(key);
+      this.stats.expired += 1;
+    } else if (entry) {
+      this.entries.delete(key);
+      this.entries.set(key, entry);
+      const answer = shape(entry, stream);
+      if (answer) {
+        this.stats.hits += 1;
+        return answer;
+      }
+    }
+    this.stats.misses += 1;
+    return null;
+  }
+
+  /**
+   * Like get(), falling back to the disk tier on a memory miss; `model`
+   * only feeds the disk tier's per-model counts
+   */
+  async lookup(key, { stream, model }) {
+    const answer = this.get(key, { stream });
+    if (answer || !this.disk) {
+      return answer;
+    }
+    const stored = await this.disk.get(key, model);
+    if (!stored) {
+      return null;
+    }
+    let value;
+    try {
+      value = stored.kind === "sse" ? { sse: stored.text } : { completion: JSON.parse(stored.text) };
+    } catch (error) {
+      return null;
+    }
+    this.set(key, value, stored.expiresAt);
+    return shape(value, stream);
+  }
+
+  /**
+   * Keep an answer in both tiers
+   */
+  store(key, value, model) {
+    this.set(key, value);
+    if (this.disk) {
+      this.disk.set(
+        key,
+        value.sse !== undefined ? "sse" : "json",
+        value.sse ?? JSON.stringify(value.completion),
+        model,
+      );
+    }
+  }
+
+  /**
+   * Keep an answer in memory: `sse` (the relayed bytes as text) or
+   * `completion`
+   */
+  set(key, { sse, completion }, expiresAt = Date.now() + this.ttlMs) {
+    if (this.maxBytes <= 0) {
+      return;
+    }
+    const size = sse !== undefined ? Buffer.byteLength(sse) : Buffer.byteLength(JSON.stringify(completion));
+    // One entry may not take more than a quarter of the budget
+    if (size > this.maxBytes / 4) {
+      return;
+    }
+    this.delete(key);
+    this.entries.set(key, { sse, completion, size, expiresAt });
+    this.bytes += size;
+    this.stats.stores += 1;
+    for (const oldest of this.entries.keys()) {
+      if (this.bytes <= this.maxBytes) {
+        break;
+      }
+      this.delete(oldest);
+      this.stats.evictions += 1;
+    }
+  }
+
+  delete(key) {
+    const entry = this.entries.get(key);
+    if (entry) {
+      this.entries.delete(key);
+      this.bytes -= entry.size;
+    }
+  }
+
+  snapshot() {
+    const lookups = this.stats.hits + this.stats.misses;
+    return {
+      enabled: this.enabled,
+      entries: this.entries.size,
+      bytes: this.bytes,
+      max_bytes: this.maxBytes,
+      ttl_ms: this.ttlMs,
+      ...this.stats,
+      hit_rate: lookups > 0 ? Math.round((this.stats.hits / lookups) * 1000) / 1000 : null,
+    };
+  }
+}
+
+module.exports = { ResponseCache };
@@ -0,0 +1,119 @@
+/**
+ * Retries for transient provider failures
+ *
+ * Only used before anything has been sent to the client: a failed attempt
+ * is either a connection-level error or a retryable status on a response
+ * whose body hasn't been relayed yet, so a retry is invisible to Rider.
+ * Delays use "full jitter" exponential backoff, or the provider's
+ * Retry-After when it sends one.
+ */
+
+// Overloaded / rate limited / bad gateway: worth another try
+const RETRYABLE_STATUS = new Set([429, 502, 503, 504]);
+
+// Connection failed or was dropped before a response arrived. ECONNABORTED
+// (our own 2 minute timeout) is deliberately not here.
+const RETRYABLE_CODES = new Set([
+  "ECONNRESET",
+  "ECONNREFUSED",
+  "EPIPE",
+  "ETIMEDOUT",
+  "EAI_AGAIN",
+  "ERR_HTTP2_STREAM_ERROR",
+  "ERR_HTTP2_GOAWAY_SESSION",
+]);
+
+const BASE_DELAY_MS = 500;
+const MAX_DELAY_MS = 8000;
+// Waiting longer than this on Retry-After is worse than failing fast
+const MAX_RETRY_AFTER_MS = 30000;
+
+/**
+ * Milliseconds from a Retry-After header (delta-seconds or HTTP date)
+ */
+function parseRetryAfter(value) {
+  if (value === undefined || value === null || value === "") {
+    return null;
+  }
+  const seconds = Number(value);
+  if (Number.isFinite(seconds)) {
+    return Math.max(0, seconds * 1000);
+  }
+  const date = Date.parse(value);
+  return Number.isNaN(date) ? null : Math.max(0, date - Date.now());
+}
+
+/**
+ * Delay before retry number `attempt` (0-based), or -1 to give up
+ */
+function retryDelayMs(attempt, retryAfter) {
+  const hinted = parseRetryAfter(retryAfter);
+  if (hinted !== null) {
+    return hinted <= MAX_RETRY_AFTER_MS ? hinted : -1;
+  }
+  const ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS * 2 ** attempt);
+  return Math.round(Math.random() * ceiling);
+}
+
+function sleep(ms, signal) {
+  return new Promise((resolve, reject) => {
+    if (signal?.aborted) {
+      reject(signal.reason);
+      return;
+    }
+    const onAbort = () => {
+      clearTimeout(timer);
+      reject(signal.reason);
+    };
+    const timer = setTimeout(() => {
+      signal?.removeEventListener("abort", onAbort);
+      resolve();
+    }, ms);
+    signal?.addEventListener("abort", onAbort, { once: true });
+  });
+}
+
+/**
+ * Run attempt() until it yields a non-retryable result or the budget of
+ * maxRetries is spent.
+ *
+ * attempt() resolves with an axios-like { status, headers, data } or
+ * rejects with a network error. A retryable response that is being
+ * discarded has its stream destroyed so the connection goes back to the
+ * pool. onRetry({ attempt, delay, status, code }) is called before each wait.
+ */
+async function withRetries(attempt, { maxRetries = 0, signal, onRetry } = {}) {
+  for (let retry = 0; ; retry++) {
+    let response;
+    try {
+      response = await attempt();
+    } catch (error) {
+      if (
+        retry >= maxRetries ||
+        signal?.aborted ||
+        !RETRYABLE_CODES.has(error.code)
+      ) {
+        throw error;
+      }
+      const delay = retryDelayMs(retry);
+      onRetry?.({ attempt: retry + 1, delay, code: error.code });
+      await sleep(delay, signal);
+      continue;
+    }
+
+    if (retry >= maxRetries || !RETRYABLE_STATUS.has(response.status)) {
+      return response;
+    }
+    const delay = retryDelayMs(retry, response.headers?.["retry-after"]);
+    if (delay < 0) {
+      return response;
+    }
+    if (typeof response.data?.destroy === "function") {
+      response.data.destroy();
+    }
+    onRetry?.({ attempt: retry + 1, delay, status: response.status });
+    await sleep(delay, signal);
+  }
+}
+
+module.exports = { withRetries, parseRetryAfter };
@@ -0,0 +1,68 @@
+/**
+ * Runtime statistics for the ProxyMe telemetry panel
+ *
+ * Tracks event-loop delay with perf_hooks.monitorEventLoopDelay over a
+ * rolling window and reports it together with V8 heap and process memory
+ * figures. The histogram is reset every window so the numbers describe the
+ * last few seconds rather than the whole process lifetime.
+ */
+const { monitorEventLoopDelay } = require("perf_hooks");
+const v8 = require("v8");
+
+const NS_PER_MS = 1e6;
+
+function createRuntimeStats({ resolutionMs = 10, windowMs = 5000 } = {}) {
+  const histogram = monitorEventLoopDelay({ resolution: resolutionMs });
+  histogram.enable();
+
+  let lastWindow = null;
+
+  const rotate = setInterval(() => {
+    lastWindow = summarize(histogram);
+    histogram.reset();
+  }, windowMs);
+  rotate.unref();
+
+  // Samples include the sampling interval itself; report only the delay
+  const lag = (ns) => round(Math.max(0, ns / NS_PER_MS - resolutionMs));
+
+  function summarize(h) {
+    if (h.count === 0) {
+      return null;
+    }
+    return {
+      mean_ms: lag(h.mean),
+      p50_ms: lag(h.percentile(50)),
+      p99_ms: lag(h.percentile(99)),
+      max_ms: lag(h.max),
+    };
+  }
+
+  function snapshot() {
+    const heap = v8.getHeapStatistics();
+    const memory = process.memoryUsage();
+    return {
+      // Last complete window, or the partial current one right after start
+      event_loop_lag: lastWindow || summarize(histogram),
+      heap: {
+        used_bytes: heap.used_heap_size,
+        total_bytes: heap.total_heap_size,
+        limit_bytes: heap.heap_size_limit,
+      },
+      memory: {
+        rss_bytes: memory.rss,
+        external_bytes: memory.external,
+        array_buffers_bytes: memory.arrayBuffers,
+      },
+      uptime_s: Math.round(process.uptime()),
+    };
+  }
+
+  return { snapshot };
+}
+
+function round(value) {
+  return Math.round(value * 100) / 100;
+}
+
+module.exports = { createRuntimeStats };
@@ -0,0 +1,264 @@
+/**
+ * Coalescing of identical in-flight requests
+ *
+ * When a request arrives while an identical one (same upstream body, same
+ * stream flag) is still being answered, it joins that flight instead of
+ * calling the provider again. A plain answer is shared once it arrives. A
+ * streamed one is fanned out: the flight keeps every chunk it has received
+ * and each client reads through its own cursor, so a late joiner first gets
+ * a replay of what it missed and then follows live. Every client is relayed
+ * with its own backpressure (see sse-relay.js); the provider is only held
+ * back once all of them are behind. The upstream call is cancelled when the
+ * last client attached to it goes away, not when the first one does. Once a
+ * flight can't be joined anymore, chunks every reader has been given are
+ * dropped, so a long stream isn't held in memory in full.
+ */
+const { Readable } = require("stream");
+
+// Stop taking joiners once this much of a stream would have to be replayed
+const MAX_REPLAY_BYTES = 4 * 1024 * 1024;
+
+/**
+ * One client's view of a streamed flight, from the first chunk on
+ */
+class FlightReader extends Readable {
+  constructor(flight) {
+    super();
+    this.flight = flight;
+    this.cursor = 0;
+    this.waiting = false;
+  }
+
+  _read() {
+    this.flight.feed(this);
+  }
+
+  _destroy(error, callback) {
+    this.flight.readers.delete(this);
+    this.flight.trim();
+    this.flight.updateFlow();
+    callback(error);
+  }
+}
+
+class Flight {
+  constructor({ stream, shared, onIdle, onDone }) {
+    this.stream = stream;
+    this.shared = shared;
+    this.onIdle = onIdle;
+    this.onDone = onDone;
+    this.members = 1; // the leader
+    this.chunks = [];
+    this.base = 0; // index of chunks[0] in the whole stream
+    this.bytes = 0;
+    this.source = null;
+    this.outcome = null; // "end" | "error" once the stream is over
+    this.error = null;
+    this.readers = new Set();
+    this.settled = false;
+    // Resolves with { status, data } once the provider has answered (for a
+    // stream: { status } alone, before the body), rejects if it couldn't
+    this.result = new Promise((resolve, reject) => {
+      this.resolve = resolve;
+      this.reject = reject;
+    });
+    this.result.catch(() => {});
+  }
+
+  get joinable() {
+    return (
+      this.shared &&
+      !this.outcome &&
+      (!this.settled || this.stream) &&
+      this.bytes <= MAX_REPLAY_BYTES
+    );
+  }
+
+  leave() {
+    this.members -= 1;
+    if (this.members === 0 && !this.outcome && !(this.settled && !this.stream)) {
+      this.onDone();
+      this.onIdle();
+    }
+  }
+
+  settle(answer) {
+    if (this.settled) {
+      return;
+    }
+    this.settled = true;
+    this.resolve(answer);
+    if (!this.stream || answer.status >= 400) {
+      this.onDone();
+    }
+  }
+
+  fail(error) {
+    if (this.settled) {
+      return;
+    }
+    this.settled = true;
+    this.reject(error);
+    this.onDone();
+  }
+
+  /**
+   * Start consuming the provider's stream on behalf of every reader
+   */
+  relay(source) {
+    this.source = source;
+    source.on("data", (chunk) => {
+      this.chunks.push(chunk);
+      this.bytes += chunk.length;
+      this.wake();
+      this.trim();
+    });
+    source.once("end", () => this.finish("end"));
+    source.once("error", (error) => this.finish("error", error));
+    source.once("close", () => this.finish("error", new Error("Upstream stream closed early")));
+  }
+
+  finish(outcome, error) {
+    if (this.outcome) {
+      return;
+    }
+    this.outcome = outcome;
+    this.error = error;
+    this.onDone();
+    this.wake();
+  }
+
+  /**
+   * A new reader for this flight's stream
+   */
+  reader() {
+    const reader = new FlightReader(this);
+    this.readers.add(reader);
+    return reader;
+  }
+
+  feed(reader) {
+    reader.waiting = false;
+    while (reader.cursor < this.base + this.chunks.length) {
+      if (!reader.push(this.chunks[reader.cursor++ - this.base])) {
+        this.trim();
+        this.updateFlow();
+        return;
+      }
+    }
+    if (this.outcome === "end") {
+      reader.push(null);
+    } else if (this.outcome === "error") {
+      reader.destroy(this.error);
+    } else {
+      reader.waiting = true;
+    }
+    this.updateFlow();
+  }
+
+  /**
+   * Drop the chunks every reader has been given. Only once the flight can't
+   * be joined, and every member has its reader, so nobody still needs a
+   * replay from the start.
+   */
+  trim() {
+    if (this.joinable || this.readers.size < this.members) {
+      return;
+    }
+    let lowest = this.base + this.chunks.length;
+    for (const reader of this.readers) {
+      lowest = Math.min(lowest, reader.cursor);
+    }
+    if (lowest > this.base) {
+      this.chunks.splice(0, lowest - this.base);
+      this.base = lowest;
+    }
+  }
+
+  wake() {
+    for (const reader of this.readers) {
+      if (reader.waiting) {
+        this.feed(reader);
+      }
+    }
+  }
+
+  /**
+   * Read from the provider while at least one reader is caught up and
+   * asking for more
+   */
+  updateFlow() {
+    if (!this.source || this.outcome) {
+      return;
+    }
+    const wanted = [...this.readers].some((reader) => reader.waiting);
+    if (wanted && this.source.isPaused()) {
+      this.source.resume();
+    } else if (!wanted && !this.source.isPaused()) {
+      this.source.pause();
+    }
+  }
+}
+
+class SingleFlight {
+  constructor() {
+    this.flights = new Map();
+    this.stats = { led: 0, coalesced: 0, replayed_bytes: 0 };
+  }
+
+  /**
+   * Key of a request: the body sent upstream (see ResponseCache.key) plus
+   * whether it is streamed
+   */
+  static key(bodyKey, stream) {
+    return `${stream ? "sse" : "json"}:${bodyKey}`;
+  }
+
+  /**
+   * The flight for key if one can still be joined, counting the caller in
+   */
+  join(key) {
+    const flight = this.flights.get(key);
+    if (!flight || !flight.joinable) {
+      return null;
+    }
+    flight.members += 1;
+    this.stats.coalesced += 1;
+    this.stats.replayed_bytes += flight.bytes;
+    return flight;
+  }
+
+  /**
+   * Register the caller as leader of a new flight. onIdle runs if every
+   * client leaves before it is over, to cancel the upstream call. A flight
+   * that isn't shared is never offered to join() (sampled requests, which
+   * must each get their own answer) but relays the same way.
+   */
+  lead(key, { stream, onIdle, shared = true }) {
+    const flight = new Flight({
+      stream,
+      shared,
+      onIdle,
+      onDone: () => {
+        if (this.flights.get(key) === flight) {
+          this.flights.delete(key);
+        }
+      },
+    });
+    if (shared) {
+      this.flights.set(key, flight);
+      this.stats.led += 1;
+    }
+    return flight;
+  }
+
+  snapshot() {
+    let followers = 0;
+    for (const flight of this.flights.values()) {
+      followers += flight.members - 1;
+    }
+    return { in_flight: this.flights.size, followers, ...this.stats };
+  }
+}
+
+module.exports = { SingleFlight };
@@ -0,0 +1,75 @@
+/**
+ * Backpressure-aware relay of an upstream SSE stream to the client
+ *
+ * The upstream stream is paused whenever res.write() reports that the
+ * client's buffer is above its high-water mark, and resumed on 'drain', so
+ * a slow consumer (or a suspended IDE) holds the provider back instead of
+ * piling chunks up in proxy memory. The high-water mark itself is set on the
+ * HTTP server's sockets (see PROXYME_STREAM_HIGH_WATER_MARK in proxy.js).
+ */
+
+/**
+ * Relay source to res until the source ends, fails or the client goes away.
+ *
+ * onChunk(chunk), if given, sees every chunk as it is written. Resolves with
+ * { bytes, chunks, paused, backpressure_ms, outcome } where outcome is "end",
+ * "error" or "closed". Never rejects; res is ended unless the client already
+ * closed it.
+ */
+function relayStream(source, res, { onChunk } = {}) {
+  return new Promise((resolve) => {
+    const result = {
+      bytes: 0,
+      chunks: 0,
+      paused: 0,
+      backpressure_ms: 0,
+      outcome: null,
+    };
+    let pausedAt = 0;
+
+    const resumeAfterDrain = () => {
+      result.backpressure_ms += Date.now() - pausedAt;
+      pausedAt = 0;
+      source.resume();
+    };
+
+    const finish = (outcome, error) => {
+      if (result.outcome) {
+        return;
+      }
+      if (pausedAt) {
+        result.backpressure_ms += Date.now() - pausedAt;
+        pausedAt = 0;
+      }
+      result.outcome = outcome;
+      result.error = error;
+      source.removeListener("data", onData);
+      res.removeListener("drain", resumeAfterDrain);
+      res.removeListener("close", onClose);
+      if (!res.writableEnded) {
+        res.end();
+      }
+      resolve(result);
+    };
+
+    const onData = (chunk) => {
+      result.bytes += chunk.length;
+      result.chunks += 1;
+      onChunk?.(chunk);
+      if (!res.write(chunk) && !pausedAt) {
+        pausedAt = Date.now();
+        result.paused += 1;
+        source.pause();
+        res.once("drain", resumeAfterDrain);
+      }
+    };
+    const onClose = () => finish("closed");
+
+    source.on("data", onData);
+    source.once("end", () => finish("end"));
+    source.once("error", (error) => finish("error", error));
+    res.once("close", onClose);
+  });
+}
+
+module.exports = { relayStream };
@@ -0,0 +1,395 @@
+/**
+ * Persistent upstream connections, one pool per provider
+ *
+ * Every provider gets its own keep-alive http/https agents, so consecutive
+ * completions to the same API reuse an open TCP+TLS connection instead of
+ * paying DNS, handshake and TLS setup on each turn. When HTTP/2 is enabled,
+ * HTTPS requests are multiplexed over a single long-lived session per
+ * origin instead; origins that don't negotiate h2 fall back to the HTTP/1.1
+ * agents. warm() opens those connections at startup so the first chat
+ * request doesn't pay for them either.
+ *
+ * Tuned through environment variables set by the plugin:
+ *   PROXYME_POOL_MAX_SOCKETS      max concurrent sockets per provider (16)
+ *   PROXYME_POOL_IDLE_TIMEOUT_MS  close idle sockets/sessions after (30000)
+ *   PROXYME_POOL_HTTP2            "true" to use HTTP/2 for https upstreams
+ */
+const http = require("http");
+const https = require("https");
+const http2 = require("http2");
+const axios = require("axios");
+
+// Headers that are connection-specific and not allowed on an HTTP/2 stream
+const HOP_BY_HOP = new Set([
+  "connection",
+  "keep-alive",
+  "proxy-connection",
+  "transfer-encoding",
+  "upgrade",
+  "host",
+]);
+
+function createStats() {
+  return { requests: 0, reused: 0, sockets_created: 0 };
+}
+
+/**
+ * Agent that counts new sockets and reused ones
+ */
+function countingAgent(Base, options, stats) {
+  const agent = new Base(options);
+  const createConnection = agent.createConnection.bind(agent);
+  agent.createConnection = (...args) => {
+    stats.sockets_created += 1;
+    return createConnection(...args);
+  };
+  const addRequest = agent.addRequest.bind(agent);
+  agent.addRequest = (req, opts) => {
+    // Warm-up probes open sockets but are not traffic
+    if (opts && opts.proxymeWarmup) {
+      return addRequest(req, opts);
+    }
+    stats.requests += 1;
+    req.once("socket", () => {
+      if (req.reusedSocket) {
+        stats.reused += 1;
+      }
+    });
+    return addRequest(req, opts);
+  };
+  return agent;
+}
+
+function countSockets(map) {
+  return Object.values(map).reduce((sum, list) => sum + list.length, 0);
+}
+
+function round(ms) {
+  return Math.round(ms * 10) / 10;
+}
+
+class UpstreamPool {
+  constructor({
+    maxSockets = 16,
+    maxFreeSockets = 8,
+    idleTimeoutMs = 30000,
+    http2: useHttp2 = false,
+  } = {}) {
+    this.options = { maxSockets, maxFreeSockets, idleTimeoutMs, useHttp2 };
+    this.providers = new Map();
+    this.sessions = new Map();
+    this.h1Only = new Set();
+    this.warmup = null;
+  }
+
+  static fromEnv(env = process.env) {
+    return new UpstreamPool({
+      maxSockets: parseInt(env.PROXYME_POOL_MAX_SOCKETS || "16", 10),
+      idleTimeoutMs: parseInt(env.PROXYME_POOL_IDLE_TIMEOUT_MS || "30000", 10),
+      http2: env.PROXYME_POOL_HTTP2 === "true",
+    });
+  }
+
+  /**
+   * Keep-alive agents for a provider (created on first use)
+   */
+  provider(name) {
+    let entry = this.providers.get(name);
+    if (!entry) {
+      const stats = createStats();
+      const agentOptions = {
+        keepAlive: true,
+        maxSockets: this.options.maxSockets,
+        maxFreeSockets: this.options.maxFreeSockets,
+        timeout: this.options.idleTimeoutMs,
+        scheduling: "lifo",
+      };
+      entry = {
+        stats,
+        h2: { requests: 0, reused: 0, sessions_created: 0 },
+        httpAgent: countingAgent(http.Agent, agentOptions, stats),
+        httpsAgent: countingAgent(https.Agent, agentOptions, stats),
+      };
+      this.providers.set(name, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * POST a JSON body upstream.
+   *
+   * Resolves with { status, headers, data } like axios: data is a readable
+   * stream when responseType is "stream", parsed JSON otherwise. Never
+   * rejects on HTTP status; network errors reject with a .code.
+   */
+  async post(providerName, url, body, { headers = {}, timeout, responseType, signal } = {}) {
+    const entry = this.provider(providerName);
+    const target = new URL(url);
+
+    if (
+      this.options.useHttp2 &&
+      target.protocol === "https:" &&
+      !this.h1Only.has(target.origin)
+    ) {
+      try {
+        return await this.postHttp2(entry, target, body, { headers, timeout, responseType, signal });
+      } catch (error) {
+        if (error.code !== "PROXYME_NO_H2") {
+          throw error;
+        }
+        this.h1Only.add(target.origin);
+      }
+    }
+
+    const response = await axios.post(url, body, {
+      headers,
+      timeout,
+      responseType,
+      signal,
+      httpAgent: entry.httpAgent,
+      httpsAgent: entry.httpsAgent,
+      validateStatus: (status) => status < 600,
+    });
+    return { status: response.status, headers: response.headers, data: response.data };
+  }
+
+  /**
+   * Reuse (or open) the HTTP/2 session for an origin
+   */
+  session(entry, origin) {
+    const existing = this.sessions.get(origin);
+    if (existing && !existing.closed && !existing.destroyed) {
+      entry.h2.reused += 1;
+      return Promise.resolve(existing);
+    }
+
+    return new Promise((resolve, reject) => {
+      const session = http2.connect(origin);
+      const onConnectError = (error) => {
+        this.sessions.delete(origin);
+        // The h2 client offers only "h2" in ALPN; h1-only servers refuse it
+        if (error.code === "ERR_SSL_TLSV1_ALERT_NO_APPLICATION_PROTOCOL") {
+          error.code = "PROXYME_NO_H2";
+        }
+        reject(error);
+      };
+      session.once("error", onConnectError);
+      session.once("connect", () => {
+        session.removeListener("error", onConnectError);
+        if (session.alpnProtocol !== "h2") {
+          session.destroy();
+          const error = new Error(`${origin} does not support HTTP/2`);
+          error.code = "PROXYME_NO_H2";
+          reject(error);
+          return;
+        }
+        entry.h2.sessions_created += 1;
+        session.setTimeout(this.options.idleTimeoutMs, () => session.close());
+        session.on("error", () => session.destroy());
+        resolve(session);
+      });
+      const forget = () => {
+        if (this.sessions.get(origin) === session) {
+          this.sessions.delete(origin);
+        }
+      };
+      session.on("close", forget);
+      session.on("goaway", forget);
+      this.sessions.set(origin, session);
+    });
+  }
+
+  async postHttp2(entry, target, body, { headers, timeout, responseType, signal }) {
+    const session = await this.session(entry, target.origin);
+    entry.h2.requests += 1;
+    const payload = Buffer.from(JSON.stringify(body));
+
+    const requestHeaders = {
+      ":method": "POST",
+      ":path": target.pathname + target.search,
+      "content-length": payload.length,
+      "accept-encoding": "identity",
+    };
+    for (const [name, value] of Object.entries(headers)) {
+      const lower = name.toLowerCase();
+      if (!HOP_BY_HOP.has(lower)) {
+        requestHeaders[lower] = value;
+      }
+    }
+
+    return new Promise((resolve, reject) => {
+      const stream = session.request(requestHeaders, { signal });
+      if (timeout) {
+        stream.setTimeout(timeout, () => {
+          const error = new Error(`timeout of ${timeout}ms exceeded`);
+          error.code = "ECONNABORTED";
+          stream.destroy(error);
+        });
+      }
+      stream.once("error", reject);
+      stream.once("response", (responseHeaders) => {
+        const status = responseHeaders[":status"];
+        if (responseType === "stream") {
+          stream.removeListener("error", reject);
+          resolve({ status, headers: responseHeaders, data: stream });
+          return;
+        }
+        const chunks = [];
+        stream.on("data", (chunk) => chunks.push(chunk));
+        stream.on("end", () => {
+          const text = Buffer.concat(chunks).toString("utf8");
+          let data = text;
+          try {
+            data = JSON.parse(text);
+          } catch (error) {
+            // Non-JSON error page; pass through as text
+          }
+          resolve({ status, headers: responseHeaders, data });
+        });
+      });
+      stream.end(payload);
+    });
+  }
+
+  /**
+   * Open a pooled connection to each distinct upstream origin ahead of the
+   * first real request, so DNS, TCP and TLS are already paid for.
+   *
+   * targets: [{ provider, url }]. Origins are connected in parallel; the
+   * per-origin timings are kept for /health. Never rejects.
+   */
+  async warm(targets, { timeoutMs = 10000 } = {}) {
+    const origins = new Map();
+    for (const { provider, url } of targets) {
+      try {
+        const target = new URL(url);
+        if (!origins.has(target.origin)) {
+          origins.set(target.origin, { provider, target });
+        }
+      } catch (error) {
+        // Malformed endpoint; the chat request will report it
+      }
+    }
+
+    const startedAt = Date.now();
+    const results = await Promise.all(
+      [...origins.values()].map(({ provider, target }) =>
+        this.warmOrigin(provider, target, timeoutMs),
+      ),
+    );
+    this.warmup = {
+      started_at: new Date(startedAt).toISOString(),
+      duration_ms: Date.now() - startedAt,
+      hosts: Object.fromEntries(
+        results.map((result) => [result.origin, result]),
+      ),
+    };
+    return this.warmup;
+  }
+
+  async warmOrigin(providerName, target, timeoutMs) {
+    const entry = this.provider(providerName);
+    const result = { origin: target.origin, provider: providerName };
+    const start = process.hrtime.bigint();
+    const elapsed = () => Number(process.hrtime.bigint() - start) / 1e6;
+
+    if (
+      this.options.useHttp2 &&
+      target.protocol === "https:" &&
+      !this.h1Only.has(target.origin)
+    ) {
+      try {
+        await this.session(entry, target.origin);
+        result.protocol = "h2";
+        result.connect_ms = round(elapsed());
+        return result;
+      } catch (error) {
+        if (error.code !== "PROXYME_NO_H2") {
+          result.error = error.code || error.message;
+          return result;
+        }
+        this.h1Only.add(target.origin);
+      }
+    }
+
+    // A HEAD on the origin root through the provider's agent; the socket
+    // goes back to the agent's free list once the response is drained
+    const transport = target.protocol === "https:" ? https : http;
+    return new Promise((resolve) => {
+      const req = transport.request({
+        method: "HEAD",
+        protocol: target.protocol,
+        hostname: target.hostname,
+        port: target.port || undefined,
+        path: "/",
+        agent: target.protocol === "https:" ? entry.httpsAgent : entry.httpAgent,
+        headers: { "User-Agent": "Rider-AI-Proxy/1.1" },
+        timeout: timeoutMs,
+        proxymeWarmup: true,
+      });
+      req.once("socket", (socket) => {
+        socket.once("lookup", () => {
+          result.dns_ms = round(elapsed());
+        });
+        socket.once("connect", () => {
+          result.connect_ms = round(elapsed());
+        });
+        socket.once("secureConnect", () => {
+          result.tls_ms = round(elapsed());
+        });
+      });
+      req.once("response", (res) => {
+        result.protocol = "http/1.1";
+        result.status = res.statusCode;
+        result.total_ms = round(elapsed());
+        // Resolve once the socket is back in the agent's free list
+        req.once("close", () => resolve(result));
+        res.resume();
+      });
+      req.once("timeout", () => {
+        req.destroy(Object.assign(new Error("warm-up timed out"), { code: "ETIMEDOUT" }));
+      });
+      req.once("error", (error) => {
+        result.error = error.code || error.message;
+        resolve(result);
+      });
+      req.end();
+    });
+  }
+
+  /**
+   * Pool statistics for /health
+   */
+  stats() {
+    const providers = {};
+    for (const [name, entry] of this.providers) {
+      const { sockets_created } = entry.stats;
+      // An HTTP/2 stream on an existing session counts as a pool hit too
+      const requests = entry.stats.requests + entry.h2.requests;
+      const reused = entry.stats.reused + entry.h2.reused;
+      providers[name] = {
+        requests,
+        reused,
+        sockets_created,
+        hit_rate: requests > 0 ? Math.round((reused / requests) * 1000) / 1000 : null,
+        active_sockets:
+          countSockets(entry.httpAgent.sockets) + countSockets(entry.httpsAgent.sockets),
+        idle_sockets:
+          countSockets(entry.httpAgent.freeSockets) + countSockets(entry.httpsAgent.freeSockets),
+      };
+      if (entry.h2.requests > 0) {
+        providers[name].http2 = { ...entry.h2 };
+      }
+    }
+    return {
+      max_sockets: this.options.maxSockets,
+      idle_timeout_ms: this.options.idleTimeoutMs,
+      http2: this.options.useHttp2,
+      http2_sessions: this.sessions.size,
+      providers,
+      warmup: this.warmup,
+    };
+  }
+}
+
+module.exports = { UpstreamPool };
@@ -1,21 +1,91 @@
 const express = require("express");
-const axios = require("axios");
+const http = require("http");
+const crypto = require("crypto");
 const fs = require("fs");
 const path = require("path");
+const cluster = require("cluster");
+const { createRuntimeStats } = require("./lib/runtime-stats");
+const { UpstreamPool } = require("./lib/upstream-pool");
+const { relayStream } = require("./lib/sse-relay");
+const { withRetries } = require("./lib/retry");
+const { sendWithFailover, RouteTable } = require("./lib/failover");
+const { CircuitBreakers } = require("./lib/circuit-breaker");
+const { hedged, firstByte, LatencyTracker } = require("./lib/hedge");
+const { ConcurrencyLimiters } = require("./lib/concurrency-limiter");
+const { RateLimiters, estimateTokens } = require("./lib/rate-limit");
+const { classifyRequest, CONTEXT_WEIGHTS } = require("./lib/priority");
+const { ResponseCache } = require("./lib/response-cache");
+const { DiskCache } = require("./lib/disk-cache");
+const { SingleFlight } = require("./lib/single-flight");
+const { shapeRequest, UsageTap, PromptCacheStats } = require("./lib/prompt-cache");
 require("dotenv").config();
+// Tuning settings from the plugin, rewritten before every start and reload
+// (the supervisor's own environment is fixed at launch)
+require("dotenv").config({ path: path.join(__dirname, "tuning.env") });
 
 const app = express();
 const PORT = process.env.PORT || 3000;
 
+// Worker generation assigned by supervisor.js (0 when run standalone)
+const GENERATION = parseInt(process.env.PROXYME_GENERATION || "0", 10);
+let draining = false;
+
+// Event-loop lag and heap stats reported by /health and /metrics
+const runtimeStats = createRuntimeStats();
+
+// Keep-alive (optionally HTTP/2) connections to each provider
+const upstreamPool = UpstreamPool.fromEnv();
+
+// Chat completion outcomes reported by /health and /metrics
+const requestStats = {
+  total: 0,
+  completed: 0,
+  cancelled: 0,
+  retries: 0,
+  failovers: 0,
+  hedged: 0,
+  hedge_wins: 0,
+  cache_hits: 0,
+};
+
+// Chat completions per guessed Rider feature (see lib/priority.js)
+const contextStats = Object.fromEntries(
+  Object.keys(CONTEXT_WEIGHTS).map((context) => [context, 0]),
+);
+
+// Client socket buffer size above which a relayed stream pauses upstream
+const STREAM_HIGH_WATER_MARK = parseInt(
+  process.env.PROXYME_STREAM_HIGH_WATER_MARK || "65536",
+  10,
+);
+
+// Time streams spent paused because the client wasn't reading
+const streamStats = {
+  relayed: 0,
+  backpressured: 0,
+  backpressure_ms: 0,
+  max_backpressure_ms: 0,
+};
+
 // Enable detailed logging
 const DEBUG = process.env.DEBUG === "true" || true;
 
 // Middleware
 app.use(express.json());
 
-// Request logging middleware
+// While draining, ask clients to reconnect (to the new worker) after this response
+app.use((req, res, next) => {
+  if (draining) {
+    res.setHeader("Connection", "close");
+  }
+  next();
+});
+
+// Request logging middleware (the plugin and follower IDEs poll /health
+// and /metrics, keep those quiet)
+const QUIET_PATHS = new Set(["/health", "/metrics"]);
 app.use((req, res, next) => {
-  if (DEBUG) {
+  if (DEBUG && !QUIET_PATHS.has(req.path)) {
     console.log(`\n📥 ${new Date().toISOString()} - ${req.method} ${req.path}`);
     if (req.body && Object.keys(req.body).length > 0) {
       console.log("📦 Request Body:", JSON.stringify(req.body, null, 2));
@@ -36,6 +106,80 @@ const API_KEYS = {
 let MODEL_CONFIGS = {};
 let AVAILABLE_MODELS = [];
 
+// Retry budget for models that don't set maxRetries (e.g. the defaults)
+const DEFAULT_MAX_RETRIES = 2;
+
+// Which failover target is currently serving each model
+const routeTable = new RouteTable();
+
+// Fail fast on endpoints that keep failing instead of waiting out timeouts
+const circuitBreakers = new CircuitBreakers({}, (endpoint, from, to, reason) => {
+  console.log(
+    `⚡ Circuit ${from} → ${to} for ${endpoint}${reason ? `: ${reason}` : ""}`,
+  );
+});
+
+// In-flight request caps per provider + API key, adapted to 429s/latency
+const concurrencyLimiters = new ConcurrencyLimiters();
+
+// Request/token budgets per API key, corrected from rate-limit headers
+const rateLimiters = new RateLimiters();
+
+/**
+ * Limiter key for a provider: its name plus a fingerprint of the API key in
+ * use, so the key itself never shows up in /health
+ */
+function limiterKey(provider) {
+  const fingerprint = crypto
+    .createHash("sha256")
+    .update(API_KEYS[provider] || "")
+    .digest("hex")
+    .substring(0, 8);
+  return `${provider}#${fingerprint}`;
+}
+
+// Answers to deterministic requests of models with caching enabled, in
+// memory and on disk under ~/.proxyme/cache
+const diskCache = DiskCache.fromEnv();
+diskCache.open();
+const responseCache = ResponseCache.fromEnv(process.env, { disk: diskCache });
+
+// Identical requests in flight at the same time, answered by one upstream call
+const singleFlight = new SingleFlight();
+
+// Normalize bodies and add provider prompt-cache hints (see lib/prompt-cache.js)
+const PROMPT_CACHE_HINTS = process.env.PROXYME_PROMPT_CACHE_HINTS !== "false";
+
+// Prompt tokens read from (and written to) provider prompt caches
+const promptCacheStats = new PromptCacheStats();
+
+function recordPromptCache(requestId, provider, usage) {
+  const counts = promptCacheStats.record(provider, usage);
+  if (counts && (counts.cached > 0 || counts.written > 0)) {
+    console.log(
+      `🧊 [${requestId}] Prompt cache: ${counts.cached}/${counts.prompt} prompt tokens cached` +
+        (counts.written > 0 ? `, ${counts.written} written` : ""),
+    );
+  }
+}
+
+/**
+ * SSE event for a streamed answer the provider rejected. Its body is still
+ * an unread socket stream, so clients get the status and a fixed message.
+ */
+function providerErrorEvent(status) {
+  const error = {
+    message: `AI provider returned error ${status}`,
+    type: "server_error",
+    code: "provider_error",
+    status,
+  };
+  return `data: ${JSON.stringify({ error })}\n\n`;
+}
+
+// Time-to-first-byte per hedged model, for the hedge delay and /health
+const latencyTracker = new LatencyTracker();
+
 /**
  * Load models from models.json (generated by ProxyMe plugin)
  * Falls back to default models if file doesn't exist
@@ -65,10 +209,26 @@ function loadModelsConfig() {
               url: model.endpoint,
               displayName: model.id,
               description: `${model.category} model (${model.provider})`,
-              temperature: model.temperature || 0.7,
+              temperature: model.temperature ?? 0.7,
               stream: model.stream !== undefined ? model.stream : true,
               customHeaders: model.customHeaders || {},
               customBodyParams: model.customBodyParams || {},
+              maxRetries: Number.isInteger(model.maxRetries)
+                ? Math.max(0, model.maxRetries)
+                : DEFAULT_MAX_RETRIES,
+              hedge: model.hedge === true,
+              hedgePercentile: Number.isInteger(model.hedgePercentile)
+                ? Math.min(99, Math.max(50, model.hedgePercentile))
+                : 95,
+              cache: model.cache === true,
+              cacheMaxTemperature: Number(model.cacheMaxTemperature) || 0,
+              fallbacks: (model.fallbacks || [])
+                .filter((target) => target.provider && target.endpoint)
+                .map((target) => ({
+                  provider: target.provider,
+                  url: target.endpoint,
+                  model: target.model || model.id,
+                })),
             };
           }
         });
@@ -99,6 +259,34 @@ function loadModelsConfig() {
   }));
 }
 
+/**
+ * Ordered upstream targets for a model: its own endpoint, then fallbacks
+ */
+function modelTargets(modelId) {
+  const config = MODEL_CONFIGS[modelId];
+  return [
+    { provider: config.provider, url: config.url, model: modelId, primary: true },
+    ...(config.fallbacks || []),
+  ].map((target, index) => ({ ...target, index }));
+}
+
+/**
+ * Hedge percentile of every model with hedging enabled
+ */
+function hedgePercentiles() {
+  return Object.fromEntries(
+    Object.entries(MODEL_CONFIGS)
+      .filter(([, config]) => config.hedge)
+      .map(([modelId, config]) => [modelId, config.hedgePercentile]),
+  );
+}
+
+function allModelTargets() {
+  return Object.fromEntries(
+    Object.keys(MODEL_CONFIGS).map((modelId) => [modelId, modelTargets(modelId)]),
+  );
+}
+
 /**
  * Default models configuration (fallback)
  */
@@ -180,6 +368,33 @@ function loadDefaultModels() {
 // Load models on startup
 loadModelsConfig();
 
+/**
+ * Pre-connect to every enabled model's endpoint host (fallbacks included). Runs once per worker,
+ * so a blue/green reload warms the new config before traffic moves over.
+ */
+function warmUpstreams() {
+  const targets = Object.values(allModelTargets())
+    .flat()
+    .filter((target) => target.url);
+  if (targets.length === 0) {
+    return;
+  }
+
+  upstreamPool.warm(targets).then((warmup) => {
+    console.log(`🔥 Upstream warm-up finished in ${warmup.duration_ms}ms`);
+    Object.values(warmup.hosts).forEach((host) => {
+      if (host.error) {
+        console.log(`   ⚠️  ${host.origin} (${host.provider}): ${host.error}`);
+      } else {
+        const connectMs = host.tls_ms ?? host.connect_ms;
+        console.log(
+          `   ✓ ${host.origin} (${host.provider}) connected in ${connectMs}ms`,
+        );
+      }
+    });
+  });
+}
+
 // Health check endpoint
 app.get("/health", (req, res) => {
   const apiKeysStatus = Object.keys(API_KEYS).map((provider) => ({
@@ -188,19 +403,55 @@ app.get("/health", (req, res) => {
   }));
 
   const response = {
-    status: "healthy",
+    // "degraded": answering, but some provider endpoint's circuit is open
+    status: circuitBreakers.anyOpen() ? "degraded" : "healthy",
     service: "rider-ai-proxy",
     version: "1.1.0",
     timestamp: new Date().toISOString(),
     available_models: Object.keys(MODEL_CONFIGS),
     api_keys: apiKeysStatus,
     debug_mode: DEBUG,
+    worker: {
+      pid: process.pid,
+      generation: GENERATION,
+      supervised: cluster.isWorker,
+      draining,
+    },
+    runtime: runtimeStats.snapshot(),
+    upstream_pools: upstreamPool.stats(),
+    requests: requestStats,
+    contexts: contextStats,
+    streams: streamStats,
+    model_routes: routeTable.snapshot(allModelTargets()),
+    circuit_breakers: circuitBreakers.snapshot(),
+    hedging: latencyTracker.snapshot(hedgePercentiles()),
+    concurrency: concurrencyLimiters.snapshot(),
+    rate_limits: rateLimiters.snapshot(),
+    response_cache: responseCache.snapshot(),
+    disk_cache: diskCache.snapshot(),
+    single_flight: singleFlight.snapshot(),
+    prompt_cache: promptCacheStats.snapshot(),
   };
 
-  console.log("✅ Health check successful");
   res.json(response);
 });
 
+// Runtime metrics polled by the ProxyMe telemetry panel
+app.get("/metrics", (req, res) => {
+  res.json({
+    pid: process.pid,
+    generation: GENERATION,
+    ...runtimeStats.snapshot(),
+    requests: requestStats,
+    contexts: contextStats,
+    streams: streamStats,
+    concurrency: concurrencyLimiters.snapshot(),
+    response_cache: responseCache.snapshot(),
+    single_flight: singleFlight.snapshot(),
+    prompt_cache: promptCacheStats.snapshot(),
+  });
+});
+
 // Models endpoint (OpenAI compatible)
 app.get("/v1/models", (req, res) => {
   console.log("📋 Models list requested");
@@ -213,6 +464,38 @@ app.get("/v1/models", (req, res) => {
 // Chat completions endpoint (OpenAI compatible)
 app.post("/v1/chat/completions", async (req, res) => {
   const requestId = Math.random().toString(36).substring(7);
+  requestStats.total += 1;
+
+  // When Rider cancels (closes the connection before we finish), abort the
+  // upstream request too so the provider stops generating and the pooled
+  // connection is released
+  const upstreamAbort = new AbortController();
+  let upstreamStream = null;
+  // A request sharing its upstream call with identical ones only cancels it
+  // when the last of them goes away (see the flight's onIdle below)
+  let flight = null;
+  let flightReader = null;
+  res.on("close", () => {
+    flightReader?.destroy();
+    if (res.writableFinished) {
+      requestStats.completed += 1;
+      flight?.leave();
+      return;
+    }
+    requestStats.cancelled += 1;
+    if (flight) {
+      console.log(`🚫 [${requestId}] Client disconnected, leaving shared request`);
+      flight.leave();
+      return;
+    }
+    console.log(
+      `🚫 [${requestId}] Client disconnected, cancelling upstream request`,
+    );
+    upstreamAbort.abort();
+    if (upstreamStream) {
+      upstreamStream.destroy();
+    }
+  });
 
   try {
     const { model, messages, stream = false, ...otherParams } = req.body;
@@ -291,9 +574,15 @@ app.post("/v1/chat/completions", async (req, res) => {
       });
     }
 
-    // Get API key for the provider
-    const apiKey = API_KEYS[config.provider];
-    if (!apiKey) {
+    // Which Rider feature this looks like; decides its lane when waiting
+    // for provider capacity
+    const context = classifyRequest(req.body);
+    contextStats[context] += 1;
+    console.log(`   Context: ${context}`);
+
+    // Failover chain, minus targets whose provider has no API key
+    const targets = modelTargets(model).filter((target) => API_KEYS[target.provider]);
+    if (targets.length === 0) {
       console.error(
         `❌ [${requestId}] No API key configured for ${config.provider}`,
       );
@@ -306,29 +595,255 @@ app.post("/v1/chat/completions", async (req, res) => {
       });
     }
 
-    console.log(`🔄 [${requestId}] Routing to ${config.provider} API`);
-    console.log(`   Provider: ${config.provider}`);
-    console.log(`   URL: ${config.url}`);
-    console.log(`   API Key: ${apiKey.substring(0, 10)}...`);
-
-    // Prepare request for the target API
-    const requestBody = {
-      model: model,
-      messages: fixedMessages,
-      stream: stream,
-      temperature: config.temperature || otherParams.temperature,
-      ...otherParams,
-      ...(config.customBodyParams || {}),
+    console.log(`🔄 [${requestId}] Routing to ${targets[0].provider} API`);
+    console.log(`   Provider: ${targets[0].provider}`);
+    console.log(`   URL: ${targets[0].url}`);
+    console.log(
+      `   API Key: ${API_KEYS[targets[0].provider].substring(0, 10)}...`,
+    );
+    if (targets.length > 1) {
+      console.log(
+        `   Fallbacks: ${targets
+          .slice(1)
+          .map((target) => `${target.provider}:${target.model}`)
+          .join(", ")}`,
+      );
+    }
+
+    // Prepare request for the target API (custom body params and headers
+    // belong to the model's own endpoint, not to fallbacks on other
+    // providers), shaped so
+    // the provider can reuse its cache of the unchanged prompt prefix
+    const requestBodyFor = (target) => {
+      const body = {
+        model: target.model,
+        messages: fixedMessages,
+        stream: stream,
+        temperature: config.temperature ?? otherParams.temperature,
+        ...otherParams,
+        ...(target.primary ? config.customBodyParams || {} : {}),
+      };
+      return PROMPT_CACHE_HINTS ? shapeRequest(body, target.provider) : body;
     };
 
     if (DEBUG) {
       console.log(
         `📤 [${requestId}] Sending to provider:`,
-        JSON.stringify(requestBody, null, 2),
+        JSON.stringify(requestBodyFor(targets[0]), null, 2),
       );
     }
 
-    // Make request to the actual API
+    // Exact repeats of a deterministic request are answered from the cache.
+    // Keyed on the body the first target would get; an unset temperature
+    // means the provider default of 1.
+    const upstreamBody = requestBodyFor(targets[0]);
+    const deterministic = (upstreamBody.temperature ?? 1) <= config.cacheMaxTemperature;
+    const cacheKey =
+      config.cache && responseCache.enabled && deterministic
+        ? responseCache.key(upstreamBody)
+        : null;
+    if (cacheKey) {
+      const cached = await responseCache.lookup(cacheKey, { stream, model });
+      res.setHeader("X-ProxyMe-Cache", cached ? "hit" : "miss");
+      if (cached) {
+        requestStats.cache_hits += 1;
+        console.log(`💾 [${requestId}] Answered from response cache`);
+        if (stream) {
+          res.setHeader("Content-Type", "text/event-stream");
+          res.setHeader("Cache-Control", "no-cache");
+          res.setHeader("Connection", "keep-alive");
+          res.end(cached);
+        } else {
+          res.json(cached);
+        }
+        return;
+      }
+    }
+
+    // An identical request already in flight answers this one too: a plain
+    // answer once it arrives, a stream replayed from its first chunk on and
+    // then relayed live. Only for deterministic requests (the same
+    // temperature gate as the cache); a sampled one gets its own answer.
+    const flightKey = SingleFlight.key(responseCache.key(upstreamBody), stream);
+    flight = deterministic ? singleFlight.join(flightKey) : null;
+    if (flight) {
+      console.log(`🔗 [${requestId}] Joined identical in-flight request`);
+      if (!stream) {
+        const answer = await flight.result;
+        return res.status(answer.status).json(answer.data);
+      }
+      res.setHeader("Content-Type", "text/event-stream");
+      res.setHeader("Cache-Control", "no-cache");
+      res.setHeader("Connection", "keep-alive");
+      let answer;
+      try {
+        answer = await flight.result;
+      } catch (error) {
+        res.write(
+          `data: ${JSON.stringify({ error: { message: error.message } })}\n\n`,
+        );
+        res.end();
+        return;
+      }
+      if (answer.status >= 400) {
+        res.write(providerErrorEvent(answer.status));
+        res.end();
+        return;
+      }
+      if (res.destroyed) {
+        return;
+      }
+      flightReader = flight.reader();
+      const relay = await relayStream(flightReader, res);
+      if (relay.outcome === "end") {
+        console.log(`✅ [${requestId}] Shared stream completed (${relay.bytes} bytes)`);
+      } else if (relay.outcome === "error") {
+        console.error(`❌ [${requestId}] Shared stream error:`, relay.error.message);
+      }
+      return;
+    }
+    flight = singleFlight.lead(flightKey, {
+      stream,
+      shared: deterministic,
+      onIdle: () => {
+        console.log(`🚫 [${requestId}] No clients left, cancelling upstream request`);
+        upstreamAbort.abort();
+        if (upstreamStream) {
+          upstreamStream.destroy();
+        }
+      },
+    });
+
+    // Make request to the actual API. Transient failures (429/5xx, dropped
+    // connections) are retried on each target, then the next target in the
+    // chain takes over on connection errors, timeouts or 5xx - all before
+    // anything reaches the client. Each attempt first asks its endpoint's
+    // circuit breaker, which fails fast (on to the next target) while open,
+    // and only then waits for the key's rate-limit budget and for a slot
+    // under the provider's concurrency limit (weighted-fair by context).
+    // Never rejects on HTTP status; errors are forwarded below.
+    const maxRetries = config.maxRetries ?? DEFAULT_MAX_RETRIES;
+    const callTarget = (target, responseType, signal = upstreamAbort.signal, onSent) =>
+      withRetries(
+        () => {
+          const body = requestBodyFor(target);
+          const key = limiterKey(target.provider);
+          return circuitBreakers.run(
+            target.url,
+            (sent) =>
+              rateLimiters.run(
+                key,
+                () =>
+                  concurrencyLimiters.run(
+                    key,
+                    () => {
+                      sent();
+                      onSent?.();
+                      return upstreamPool.post(target.provider, target.url, body, {
+                        headers: {
+                          Authorization: `Bearer ${API_KEYS[target.provider]}`,
+                          "Content-Type": "application/json",
+                          "User-Agent": "Rider-AI-Proxy/1.1",
+                          ...(target.primary ? config.customHeaders || {} : {}),
+                        },
+                        timeout: 120000, // 2 minute timeout for deep research models
+                        responseType,
+                        signal,
+                      });
+                    },
+                    { signal, priority: context },
+                  ),
+                { tokens: estimateTokens(body), signal },
+              ),
+            { signal },
+          );
+        },
+        {
+          maxRetries,
+          signal,
+          onRetry: ({ attempt, delay, status, code }) => {
+            requestStats.retries += 1;
+            console.log(
+              `🔁 [${requestId}] ${status || code} from ${target.provider}, retry ${attempt}/${maxRetries} in ${delay}ms`,
+            );
+          },
+        },
+      );
+    const callChain = async (responseType, signal = upstreamAbort.signal, onSent) => {
+      const { response, target } = await sendWithFailover(
+        targets,
+        (target) => callTarget(target, responseType, signal, onSent),
+        {
+          signal,
+          onFailover: ({ from, to, status, code }) => {
+            requestStats.failovers += 1;
+            console.log(
+              `🔀 [${requestId}] ${status || code} from ${from.provider}:${from.model}, failing over to ${to.provider}:${to.model}`,
+            );
+          },
+        },
+      );
+      return { ...response, target };
+    };
+
+    // Hedging: if the chain has produced no first byte (first streamed
+    // token, or the whole answer when not streaming) after the model's usual
+    // TTFT percentile, race a second request against it - to the first
+    // fallback if there is one, else the same endpoint - and keep the winner.
+    // The delay runs from when the primary got its slot and was sent, and no
+    // hedge is sent into a lane that is already full.
+    const callHedged = async (responseType) => {
+      const untilFirstByte = async (response, signal) => {
+        if (responseType === "stream" && response.status < 400) {
+          await firstByte(response.data, signal);
+        }
+        return response;
+      };
+      const hedgeTarget = targets[1] || targets[0];
+      const hedgeStats = latencyTracker.entry(model);
+      hedgeStats.requests += 1;
+
+      const { response, winner, primaryTtftMs } = await hedged(
+        async (signal, sent) =>
+          untilFirstByte(await callChain(responseType, signal, sent), signal),
+        async (signal, sent) =>
+          untilFirstByte(
+            { ...(await callTarget(hedgeTarget, responseType, signal, sent)), target: hedgeTarget },
+            signal,
+          ),
+        {
+          delayMs: latencyTracker.delayMs(model, config.hedgePercentile),
+          signal: upstreamAbort.signal,
+          canHedge: () => !concurrencyLimiters.saturated(limiterKey(hedgeTarget.provider)),
+          onHedge: ({ delayMs }) => {
+            requestStats.hedged += 1;
+            hedgeStats.hedged += 1;
+            console.log(
+              `🪁 [${requestId}] No first byte after ${delayMs}ms, hedging to ${hedgeTarget.provider}:${hedgeTarget.model}`,
+            );
+          },
+        },
+      );
+      if (winner === "hedge") {
+        requestStats.hedge_wins += 1;
+        hedgeStats.wins += 1;
+        console.log(`🪁 [${requestId}] Hedge answered first, primary cancelled`);
+      }
+      if (response.status < 400) {
+        latencyTracker.record(model, primaryTtftMs);
+      }
+      return response;
+    };
+
+    const callUpstream = async (responseType) => {
+      const response = config.hedge
+        ? await callHedged(responseType)
+        : await callChain(responseType);
+      if (response.status < 500) {
+        routeTable.record(model, response.target);
+      }
+      return response;
+    };
     const startTime = Date.now();
 
     // Handle streaming vs non-streaming
@@ -341,43 +856,81 @@ app.post("/v1/chat/completions", async (req, res) => {
       res.setHeader("Connection", "keep-alive");
 
       try {
-        const response = await axios.post(config.url, requestBody, {
-          headers: {
-            Authorization: `Bearer ${apiKey}`,
-            "Content-Type": "application/json",
-            "User-Agent": "Rider-AI-Proxy/1.1",
-            ...(config.customHeaders || {}),
-          },
-          timeout: 120000,
-          responseType: "stream",
-          validateStatus: (status) => status < 600,
-        });
+        const response = await callUpstream("stream");
+        upstreamStream = response.data;
 
+        // Followers only need the status; the stream is relayed to them
+        // through the flight
+        flight.settle({ status: response.status });
         if (response.status >= 400) {
           console.error(
             `❌ [${requestId}] Provider returned error ${response.status}`,
           );
-          res.write(`data: ${JSON.stringify({ error: response.data })}\n\n`);
+          response.data.destroy();
+          res.write(providerErrorEvent(response.status));
           res.end();
           return;
         }
 
-        // Pipe the streaming response
-        response.data.on("data", (chunk) => {
-          res.write(chunk);
-        });
-
-        response.data.on("end", () => {
-          const duration = Date.now() - startTime;
-          console.log(`✅ [${requestId}] Stream completed in ${duration}ms`);
-          res.end();
+        // Relay the stream through the flight, which holds the provider back
+        // only while every client sharing it is behind; keep a copy of the
+        // bytes for the cache if this one is cacheable
+        flight.relay(response.data);
+        if (res.destroyed) {
+          return; // only followers left
+        }
+        flightReader = flight.reader();
+        let captured = cacheKey ? [] : null;
+        let capturedBytes = 0;
+        const usageTap = new UsageTap();
+        const relay = await relayStream(flightReader, res, {
+          onChunk: (chunk) => {
+            usageTap.write(chunk);
+            if (!captured) {
+              return;
+            }
+            capturedBytes += chunk.length;
+            if (capturedBytes > responseCache.maxEntryBytes) {
+              captured = null; // too big to cache anyway
+            } else {
+              captured.push(chunk);
+            }
+          },
         });
+        recordPromptCache(requestId, response.target.provider, usageTap.usage);
+        if (captured && relay.outcome === "end" && response.status === 200) {
+          responseCache.store(
+            cacheKey,
+            { sse: Buffer.concat(captured).toString("utf8") },
+            model,
+          );
+        }
+        streamStats.relayed += 1;
+        if (relay.paused > 0) {
+          streamStats.backpressured += 1;
+          streamStats.backpressure_ms += relay.backpressure_ms;
+          streamStats.max_backpressure_ms = Math.max(
+            streamStats.max_backpressure_ms,
+            relay.backpressure_ms,
+          );
+        }
 
-        response.data.on("error", (error) => {
-          console.error(`❌ [${requestId}] Stream error:`, error.message);
-          res.end();
-        });
+        const duration = Date.now() - startTime;
+        if (relay.outcome === "end") {
+          console.log(
+            `✅ [${requestId}] Stream completed in ${duration}ms` +
+              (relay.paused > 0
+                ? ` (client backpressure ${relay.backpressure_ms}ms, paused ${relay.paused}x)`
+                : ""),
+          );
+        } else if (relay.outcome === "error" && !upstreamAbort.signal.aborted) {
+          console.error(`❌ [${requestId}] Stream error:`, relay.error.message);
+        }
       } catch (error) {
+        flight.fail(error);
+        if (upstreamAbort.signal.aborted) {
+          return;
+        }
         console.error(`❌ [${requestId}] Streaming error:`, error.message);
         res.write(
           `data: ${JSON.stringify({ error: { message: error.message } })}\n\n`,
@@ -386,16 +939,8 @@ app.post("/v1/chat/completions", async (req, res) => {
       }
     } else {
       // Non-streaming request
-      const response = await axios.post(config.url, requestBody, {
-        headers: {
-          Authorization: `Bearer ${apiKey}`,
-          "Content-Type": "application/json",
-          "User-Agent": "Rider-AI-Proxy/1.1",
-          ...(config.customHeaders || {}),
-        },
-        timeout: 120000, // 2 minute timeout for deep research models
-        validateStatus: (status) => status < 600, // Don't throw on any status
-      });
+      const response = await callUpstream();
+      flight.settle({ status: response.status, data: response.data });
 
       const duration = Date.now() - startTime;
 
@@ -417,10 +962,21 @@ app.post("/v1/chat/completions", async (req, res) => {
         );
       }
 
+      recordPromptCache(requestId, response.target.provider, response.data?.usage);
+
+      if (cacheKey && response.status === 200 && typeof response.data === "object") {
+        responseCache.store(cacheKey, { completion: response.data }, model);
+      }
+
       // Return the response as-is (already in OpenAI format)
       res.json(response.data);
     }
   } catch (error) {
+    flight?.fail(error);
+    if (upstreamAbort.signal.aborted) {
+      // Client is gone; nothing to respond to
+      return;
+    }
     console.error(`\n❌ [${requestId}] Proxy error occurred:`);
     console.error(`   Error type: ${error.constructor.name}`);
     console.error(`   Error message: ${error.message}`);
@@ -444,6 +1000,35 @@ app.post("/v1/chat/completions", async (req, res) => {
           code: "provider_unavailable",
         },
       });
+    } else if (error.code === "ECIRCUITOPEN") {
+      console.error(`   Circuit open, failing fast`);
+      res.status(503).json({
+        error: {
+          message: `AI provider is failing repeatedly and has been paused. ${error.message}`,
+          type: "server_error",
+          code: "circuit_open",
+        },
+      });
+    } else if (error.code === "ELIMITQUEUE") {
+      console.error(`   Concurrency limit reached, request not sent`);
+      res.setHeader("Retry-After", "1");
+      res.status(503).json({
+        error: {
+          message: `AI provider is busy with other requests from this proxy. ${error.message}`,
+          type: "server_error",
+          code: "provider_busy",
+        },
+      });
+    } else if (error.code === "ERATELIMITED") {
+      console.error(`   Rate limit budget exhausted, request not sent`);
+      res.setHeader("Retry-After", String(Math.ceil(error.retryAfterMs / 1000)));
+      res.status(429).json({
+        error: {
+          message: `AI provider rate limit reached. ${error.message}`,
+          type: "rate_limit_error",
+          code: "rate_limited",
+        },
+      });
     } else if (error.code === "ETIMEDOUT" || error.code === "ECONNABORTED") {
       console.error(`   Request timeout`);
       res.status(504).json({
@@ -530,6 +1115,80 @@ app.post("/v1/chat/completions/test", async (req, res) => {
   });
 });
 
+/**
+ * Blue/green reload (supervised mode only)
+ * Asks supervisor.js to start a fresh worker with the current .env and
+ * models.json and to drain this one. Only accepted from loopback.
+ */
+const pendingReloads = new Map();
+
+app.post("/admin/reload", (req, res) => {
+  const remote = req.socket.remoteAddress;
+  if (!["127.0.0.1", "::1", "::ffff:127.0.0.1"].includes(remote)) {
+    return res.status(403).json({
+      error: {
+        message: "Reload is only allowed from localhost",
+        type: "invalid_request_error",
+        code: "forbidden",
+      },
+    });
+  }
+
+  if (!cluster.isWorker) {
+    return res.status(409).json({
+      error: {
+        message: "Proxy is not running under supervisor.js; restart it instead",
+        type: "invalid_request_error",
+        code: "not_supervised",
+      },
+    });
+  }
+
+  const id = Math.random().toString(36).substring(7);
+  pendingReloads.set(id, res);
+  console.log(`🔁 [${id}] Reload requested`);
+  process.send({ cmd: "proxyme:reload", id });
+});
+
+if (cluster.isWorker) {
+  process.on("message", (message) => {
+    if (!message) {
+      return;
+    }
+    if (message.cmd === "proxyme:reloaded") {
+      const res = pendingReloads.get(message.id);
+      pendingReloads.delete(message.id);
+      if (!res) {
+        return;
+      }
+      if (message.error) {
+        res.status(500).json({
+          error: {
+            message: `Reload failed: ${message.error}`,
+            type: "server_error",
+            code: "reload_failed",
+          },
+        });
+      } else {
+        res.json({
+          status: "reloaded",
+          generation: message.generation,
+          duration_ms: message.duration_ms,
+        });
+      }
+    } else if (message.cmd === "proxyme:drain") {
+      // Stop reusing idle keep-alive sockets so clients move to the new
+      // worker; in-flight streams keep running until they complete
+      draining = true;
+      // Hand the disk cache over to the new worker
+      diskCache.close();
+      if (typeof server.closeIdleConnections === "function") {
+        server.closeIdleConnections();
+      }
+    }
+  });
+}
+
 // 404 handler
 app.use((req, res) => {
   console.log(`⚠️  404 - Path not found: ${req.method} ${req.path}`);
@@ -543,8 +1202,14 @@ app.use((req, res) => {
   });
 });
 
-// Start server
-const server = app.listen(PORT, () => {
+// Start server (the socket high-water mark drives stream backpressure)
+const server = http.createServer(
+  { highWaterMark: STREAM_HIGH_WATER_MARK },
+  app,
+);
+server.listen(PORT, () => {
+  // Machine-readable readiness marker watched by the ProxyMe plugin
+  console.log(`PROXYME_READY port=${PORT} pid=${process.pid}`);
   console.log("\n" + "=".repeat(60));
   console.log("🚀 Rider IDE AI Proxy Server Started (v2.1.0)");
   console.log("=".repeat(60));
@@ -584,11 +1249,14 @@ const server = app.listen(PORT, () => {
   );
   console.log(`   Modify models in: Tools → ProxyMe → Settings`);
   console.log("=".repeat(60) + "\n");
+
+  warmUpstreams();
 });
 
 // Graceful shutdown
 process.on("SIGINT", () => {
   console.log("\n\n🛑 Shutting down Rider IDE AI Proxy gracefully...");
+  diskCache.close();
   server.close(() => {
     console.log("✅ Server closed");
     process.exit(0);
@@ -603,6 +1271,7 @@ process.on("SIGINT", () => {
 
 process.on("SIGTERM", () => {
   console.log("\n🛑 SIGTERM received, shutting down...");
+  diskCache.close();
   server.close(() => {
     console.log("✅ Server closed");
     process.exit(0);
@@ -0,0 +1,226 @@
+/**
+ * ProxyMe proxy supervisor
+ *
+ * Entry point launched by the ProxyMe plugin. The supervisor owns the
+ * listening socket (through Node's cluster module) and runs proxy.js as a
+ * worker. A reload forks a fresh worker that re-reads .env and models.json,
+ * waits until it is listening, and only then retires the old worker: the old
+ * one stops accepting connections but keeps serving its open SSE streams
+ * until they finish (or the drain timeout expires).
+ *
+ * Reloads are requested by a worker forwarding POST /admin/reload over IPC.
+ *
+ * The supervisor records itself in proxy.pid (PID, start time, port) so the
+ * plugin can tell its own proxy apart from an unrelated process that happens
+ * to hold the port, and stop the whole process tree without lsof/kill.
+ */
+const cluster = require("cluster");
+const fs = require("fs");
+const path = require("path");
+
+const DRAIN_TIMEOUT_MS = parseInt(
+  process.env.PROXYME_DRAIN_TIMEOUT_MS || "600000",
+  10,
+);
+const READY_TIMEOUT_MS = parseInt(
+  process.env.PROXYME_READY_TIMEOUT_MS || "15000",
+  10,
+);
+
+const PID_FILE = path.join(__dirname, "proxy.pid");
+
+let generation = 0;
+let activeWorker = null;
+let reloading = false;
+let shuttingDown = false;
+const retiringWorkers = new Set();
+
+/**
+ * Publish proxy.pid atomically; started_at lets the plugin reject a recycled PID
+ */
+function writePidFile() {
+  const record = {
+    pid: process.pid,
+    started_at: Math.round(Date.now() - process.uptime() * 1000),
+    port: parseInt(process.env.PORT || "3000", 10),
+  };
+  const temp = `${PID_FILE}.${process.pid}.tmp`;
+  try {
+    fs.writeFileSync(temp, JSON.stringify(record));
+    fs.renameSync(temp, PID_FILE);
+  } catch (error) {
+    console.error("⚠️  Could not write PID file:", error.message);
+  }
+}
+
+function removePidFile() {
+  try {
+    const current = JSON.parse(fs.readFileSync(PID_FILE, "utf8"));
+    if (current.pid === process.pid) {
+      fs.unlinkSync(PID_FILE);
+    }
+  } catch (error) {
+    // Already gone or replaced by a newer supervisor
+  }
+}
+
+cluster.setupPrimary({
+  exec: path.join(__dirname, "proxy.js"),
+});
+
+/**
+ * Fork a worker and resolve once it is listening
+ */
+function spawnWorker() {
+  generation += 1;
+  const worker = cluster.fork({ PROXYME_GENERATION: String(generation) });
+  worker.generation = generation;
+
+  return new Promise((resolve, reject) => {
+    const timer = setTimeout(() => {
+      cleanup();
+      worker.kill();
+      reject(new Error(`worker did not listen within ${READY_TIMEOUT_MS}ms`));
+    }, READY_TIMEOUT_MS);
+
+    const onListening = () => {
+      cleanup();
+      resolve(worker);
+    };
+    const onExit = (code) => {
+      cleanup();
+      reject(new Error(`worker exited during startup (code ${code})`));
+    };
+    const cleanup = () => {
+      clearTimeout(timer);
+      worker.removeListener("listening", onListening);
+      worker.removeListener("exit", onExit);
+    };
+
+    worker.on("listening", onListening);
+    worker.on("exit", onExit);
+  });
+}
+
+/**
+ * Stop routing new connections to a worker and let its streams drain
+ */
+function retireWorker(worker) {
+  retiringWorkers.add(worker);
+  console.log(
+    `♻️  Draining worker ${worker.process.pid} (generation ${worker.generation})`,
+  );
+
+  worker.send({ cmd: "proxyme:drain" });
+  worker.disconnect();
+
+  const killTimer = setTimeout(() => {
+    console.log(
+      `⚠️  Worker ${worker.process.pid} still busy after ${DRAIN_TIMEOUT_MS}ms, terminating`,
+    );
+    worker.kill();
+  }, DRAIN_TIMEOUT_MS);
+  killTimer.unref();
+
+  worker.once("exit", () => {
+    clearTimeout(killTimer);
+    retiringWorkers.delete(worker);
+    console.log(`✅ Worker ${worker.process.pid} drained`);
+  });
+}
+
+/**
+ * Blue/green swap: start a new worker, then retire the current one
+ */
+async function reload() {
+  if (reloading) {
+    throw new Error("reload already in progress");
+  }
+  reloading = true;
+  const started = Date.now();
+  try {
+    const previous = activeWorker;
+    const next = await spawnWorker();
+    activeWorker = next;
+    if (previous) {
+      retireWorker(previous);
+    }
+    const duration = Date.now() - started;
+    console.log(
+      `🔁 Reloaded proxy in ${duration}ms (generation ${next.generation})`,
+    );
+    return { generation: next.generation, duration_ms: duration };
+  } finally {
+    reloading = false;
+  }
+}
+
+cluster.on("message", (worker, message) => {
+  if (!message || message.cmd !== "proxyme:reload") {
+    return;
+  }
+  reload()
+    .then((result) =>
+      worker.send({ cmd: "proxyme:reloaded", id: message.id, ...result }),
+    )
+    .catch((error) => {
+      console.error("❌ Reload failed:", error.message);
+      worker.send({
+        cmd: "proxyme:reloaded",
+        id: message.id,
+        error: error.message,
+      });
+    });
+});
+
+cluster.on("exit", (worker, code, signal) => {
+  if (worker !== activeWorker || shuttingDown) {
+    return;
+  }
+  // The serving worker died on its own; surface it as a proxy crash
+  console.error(
+    `💥 Proxy worker ${worker.process.pid} exited unexpectedly (code ${code}, signal ${signal})`,
+  );
+  process.exit(code || 1);
+});
+
+function shutdown(signal) {
+  if (shuttingDown) {
+    return;
+  }
+  shuttingDown = true;
+  console.log(`\n🛑 ${signal} received, stopping proxy workers...`);
+
+  for (const id in cluster.workers) {
+    cluster.workers[id].process.kill("SIGTERM");
+  }
+
+  const forceTimer = setTimeout(() => {
+    console.log("⚠️  Forcing shutdown...");
+    process.exit(1);
+  }, 5000);
+  forceTimer.unref();
+
+  const waitForWorkers = () => {
+    if (Object.keys(cluster.workers).length === 0) {
+      process.exit(0);
+    }
+    setTimeout(waitForWorkers, 50);
+  };
+  waitForWorkers();
+}
+
+process.on("SIGINT", () => shutdown("SIGINT"));
+process.on("SIGTERM", () => shutdown("SIGTERM"));
+process.on("exit", removePidFile);
+
+writePidFile();
+
+spawnWorker()
+  .then((worker) => {
+    activeWorker = worker;
+  })
+  .catch((error) => {
+    console.error("❌ Failed to start proxy worker:", error.message);
+    process.exit(1);
+  });
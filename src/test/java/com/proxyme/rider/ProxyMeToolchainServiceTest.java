@@ -0,0 +1,37 @@
+package com.proxyme.rider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ProxyMeToolchainServiceTest {
+
+    @Test
+    public void parsesNodeVersionOutput() {
+        assertArrayEquals(new int[] {20, 11, 1}, ProxyMeToolchainService.parseVersion("v20.11.1"));
+        assertArrayEquals(new int[] {18, 0, 0}, ProxyMeToolchainService.parseVersion("v18.0.0\n"));
+    }
+
+    @Test
+    public void acceptsVersionsWithoutPrefix() {
+        assertArrayEquals(new int[] {22, 3, 0}, ProxyMeToolchainService.parseVersion("22.3.0"));
+    }
+
+    @Test
+    public void ignoresTrailingText() {
+        assertArrayEquals(
+            new int[] {21, 7, 3},
+            ProxyMeToolchainService.parseVersion("  v21.7.3-nightly20240301 ")
+        );
+    }
+
+    @Test
+    public void rejectsUnparsableText() {
+        assertNull(ProxyMeToolchainService.parseVersion(null));
+        assertNull(ProxyMeToolchainService.parseVersion(""));
+        assertNull(ProxyMeToolchainService.parseVersion("v20.11"));
+        assertNull(ProxyMeToolchainService.parseVersion("node v20.11.1"));
+        assertNull(ProxyMeToolchainService.parseVersion("command not found: node"));
+    }
+}
@@ -0,0 +1,185 @@
+const test = require("node:test");
+const assert = require("node:assert/strict");
+const { CircuitBreakers } = require("../../main/resources/proxy/lib/circuit-breaker");
+
+const KEY = "https://api.example.com/v1/chat/completions";
+const OPTIONS = { minCalls: 4, failureRate: 0.5, openMs: 40, halfOpenProbes: 2 };
+
+const sleep = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+
+function answer(status) {
+  return async (sent) => {
+    sent();
+    return { status };
+  };
+}
+
+function refuse(code = "ECONNREFUSED") {
+  return async (sent) => {
+    sent();
+    const error = new Error(code);
+    error.code = code;
+    throw error;
+  };
+}
+
+async function settle(breakers, call) {
+  try {
+    return await breakers.run(KEY, call);
+  } catch (error) {
+    return error;
+  }
+}
+
+function transitions() {
+  const seen = [];
+  const onStateChange = (key, from, to) => seen.push(`${from}->${to}`);
+  return { seen, onStateChange };
+}
+
+test("stays closed until enough calls have been seen", async () => {
+  const breakers = new CircuitBreakers(OPTIONS);
+  for (let i = 0; i < 3; i++) {
+    await settle(breakers, refuse());
+  }
+  assert.equal(breakers.get(KEY).state, "closed");
+  assert.equal(breakers.snapshot()[KEY].failure_rate, 1);
+});
+
+test("opens at the failure rate and then fails fast without calling", async () => {
+  const { seen, onStateChange } = transitions();
+  const breakers = new CircuitBreakers(OPTIONS, onStateChange);
+  await settle(breakers, answer(200));
+  await settle(breakers, answer(200));
+  await settle(breakers, answer(503));
+  await settle(breakers, refuse());
+  assert.equal(breakers.get(KEY).state, "open");
+  assert.deepEqual(seen, ["closed->open"]);
+
+  let called = false;
+  const error = await settle(breakers, async () => {
+    called = true;
+    return { status: 200 };
+  });
+  assert.equal(error.code, "ECIRCUITOPEN");
+  assert.equal(called, false);
+  assert.equal(breakers.snapshot()[KEY].rejected, 1);
+  assert.ok(breakers.anyOpen());
+});
+
+test("4xx answers count as successes", async () => {
+  const breakers = new CircuitBreakers(OPTIONS);
+  for (let i = 0; i < 6; i++) {
+    await settle(breakers, answer(i % 2 ? 400 : 429));
+  }
+  assert.equal(breakers.get(KEY).state, "closed");
+  assert.equal(breakers.snapshot()[KEY].failure_rate, 0);
+});
+
+test("calls that were cancelled or never sent are not counted", async () => {
+  const breakers = new CircuitBreakers(OPTIONS);
+  const controller = new AbortController();
+  controller.abort();
+  for (let i = 0; i < 4; i++) {
+    await breakers.run(KEY, refuse(), { signal: controller.signal }).catch(() => {});
+    // Rejected locally (rate limit, queue full) before anything was sent
+    await breakers
+      .run(KEY, async () => {
+        const error = new Error("queue full");
+        error.code = "ELIMITQUEUE";
+        throw error;
+      })
+      .catch(() => {});
+  }
+  assert.equal(breakers.get(KEY).state, "closed");
+  assert.equal(breakers.snapshot()[KEY].calls, 0);
+});
+
+test("slow calls open the breaker, timed from when the call was sent", async () => {
+  const breakers = new CircuitBreakers({ ...OPTIONS, slowCallMs: 20, slowCallRate: 0.5 });
+  // Waiting before sent() (queueing) doesn't make a call slow
+  for (let i = 0; i < 4; i++) {
+    await settle(breakers, async (sent) => {
+      await sleep(30);
+      sent();
+      return { status: 200 };
+    });
+  }
+  assert.equal(breakers.get(KEY).state, "closed");
+
+  for (let i = 0; i < 4; i++) {
+    await settle(breakers, async (sent) => {
+      sent();
+      await sleep(30);
+      return { status: 200 };
+    });
+  }
+  assert.equal(breakers.get(KEY).state, "open");
+  assert.match(breakers.snapshot()[KEY].last_failure, /slower than 20ms/);
+});
+
+async function tripped(onStateChange) {
+  const breakers = new CircuitBreakers(OPTIONS, onStateChange);
+  for (let i = 0; i < 4; i++) {
+    await settle(breakers, refuse());
+  }
+  assert.equal(breakers.get(KEY).state, "open");
+  return breakers;
+}
+
+test("goes half-open after the cool-down and closes when the probes succeed", async () => {
+  const { seen, onStateChange } = transitions();
+  const breakers = await tripped(onStateChange);
+  assert.ok(breakers.snapshot()[KEY].retry_in_ms > 0);
+  await sleep(OPTIONS.openMs + 10);
+
+  // Two probes at a time; a third caller is turned away meanwhile
+  let release;
+  const held = new Promise((resolve) => (release = resolve));
+  const probe = async (sent) => {
+    sent();
+    await held;
+    return { status: 200 };
+  };
+  const probes = [breakers.run(KEY, probe), breakers.run(KEY, probe)];
+  assert.equal(breakers.get(KEY).state, "half_open");
+  assert.equal((await settle(breakers, answer(200))).code, "ECIRCUITOPEN");
+
+  release();
+  await Promise.all(probes);
+  assert.equal(breakers.get(KEY).state, "closed");
+  assert.deepEqual(seen, ["closed->open", "open->half_open", "half_open->closed"]);
+});
+
+test("a failed probe opens the breaker again", async () => {
+  const { seen, onStateChange } = transitions();
+  const breakers = await tripped(onStateChange);
+  await sleep(OPTIONS.openMs + 10);
+
+  await settle(breakers, answer(502));
+  assert.equal(breakers.get(KEY).state, "open");
+  assert.equal(breakers.snapshot()[KEY].times_opened, 2);
+  assert.deepEqual(seen, ["closed->open", "open->half_open", "half_open->open"]);
+});
+
+test("a cancelled probe frees its slot without deciding", async () => {
+  const breakers = await tripped();
+  await sleep(OPTIONS.openMs + 10);
+
+  const controller = new AbortController();
+  controller.abort();
+  await breakers.run(KEY, refuse("ECONNRESET"), { signal: controller.signal }).catch(() => {});
+  await breakers.run(KEY, refuse("ECONNRESET"), { signal: controller.signal }).catch(() => {});
+  assert.equal(breakers.get(KEY).state, "half_open");
+
+  await settle(breakers, answer(200));
+  await settle(breakers, answer(200));
+  assert.equal(breakers.get(KEY).state, "closed");
+});
+
+test("each endpoint has its own breaker", async () => {
+  const breakers = await tripped();
+  const other = await breakers.run("https://fallback.example.com", answer(200));
+  assert.equal(other.status, 200);
+  assert.equal(breakers.get("https://fallback.example.com").state, "closed");
+});
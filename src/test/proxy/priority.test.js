@@ -0,0 +1,120 @@
+const test = require("node:test");
+const assert = require("node:assert/strict");
+const {
+  classifyRequest,
+  WeightedFairQueue,
+  CONTEXT_WEIGHTS,
+} = require("../../main/resources/proxy/lib/priority");
+
+function drain(queue, count = queue.length) {
+  const served = [];
+  for (let i = 0; i < count; i++) {
+    served.push(queue.shift());
+  }
+  return served;
+}
+
+test("backlogged classes are served in proportion to their weights", () => {
+  const queue = new WeightedFairQueue();
+  for (let i = 0; i < 40; i++) {
+    queue.push("chat", `chat-${i}`);
+    queue.push("commits", `commits-${i}`);
+  }
+  const served = drain(queue, 18);
+  const chats = served.filter((item) => item.startsWith("chat-")).length;
+  assert.equal(chats, 16);
+  assert.equal(served.length - chats, 2);
+  assert.equal(queue.length, 80 - 18);
+});
+
+test("each class is first in, first out", () => {
+  const queue = new WeightedFairQueue();
+  for (let i = 0; i < 5; i++) {
+    queue.push("naming", i);
+  }
+  assert.deepEqual(drain(queue), [0, 1, 2, 3, 4]);
+  assert.equal(queue.shift(), undefined);
+  assert.equal(queue.length, 0);
+});
+
+test("a request arriving behind a batch goes out after at most one weight's worth of it", () => {
+  const queue = new WeightedFairQueue();
+  for (let i = 0; i < 50; i++) {
+    queue.push("commits", `commit-${i}`);
+  }
+  drain(queue, 10);
+  queue.push("chat", "chat");
+  assert.equal(queue.shift(), "chat");
+});
+
+test("a class that was idle doesn't bank credit for it", () => {
+  const queue = new WeightedFairQueue({ a: 1, b: 1 });
+  queue.push("a", "a-0");
+  queue.shift();
+  // While b was idle, a was served many times
+  for (let i = 1; i <= 20; i++) {
+    queue.push("a", `a-${i}`);
+    queue.shift();
+  }
+  for (let i = 0; i < 4; i++) {
+    queue.push("a", `a-late-${i}`);
+    queue.push("b", `b-${i}`);
+  }
+  // Equal weights alternate instead of b getting 20 in a row
+  const served = drain(queue).map((item) => item[0]);
+  assert.deepEqual(served, ["b", "a", "b", "a", "b", "a", "b", "a"]);
+});
+
+test("unknown classes share the default lane", () => {
+  const queue = new WeightedFairQueue();
+  queue.push("something_new", "x");
+  queue.push("chat", "y");
+  assert.deepEqual(Object.keys(queue.snapshot()), ["chat"]);
+  assert.deepEqual(drain(queue), ["x", "y"]);
+});
+
+test("remove drops an item that gave up waiting", () => {
+  const queue = new WeightedFairQueue();
+  const item = { id: 2 };
+  queue.push("chat", { id: 1 });
+  queue.push("chat", item);
+  queue.push("commits", { id: 3 });
+  assert.equal(queue.remove(item), true);
+  assert.equal(queue.remove(item), false);
+  assert.equal(queue.length, 2);
+  assert.deepEqual(
+    drain(queue).map(({ id }) => id),
+    [1, 3],
+  );
+});
+
+test("snapshot reports depth and service per class", () => {
+  const queue = new WeightedFairQueue();
+  queue.push("chat", 1);
+  queue.push("chat", 2);
+  queue.shift();
+  const { chat } = queue.snapshot();
+  assert.equal(chat.weight, CONTEXT_WEIGHTS.chat);
+  assert.equal(chat.depth, 1);
+  assert.equal(chat.queued, 2);
+  assert.equal(chat.served, 1);
+  assert.equal(typeof chat.avg_wait_ms, "number");
+});
+
+test("classifyRequest recognizes Rider features by their prompts", () => {
+  const system = (text) => ({ messages: [{ role: "system", content: text }, { role: "user", content: "..." }] });
+  assert.equal(classifyRequest(system("Write a commit message for the staged changes")), "commits");
+  assert.equal(classifyRequest(system("Suggest better names for the selected symbol")), "naming");
+  assert.equal(classifyRequest(system("Apply the changes to the file")), "auto_apply");
+  assert.equal(classifyRequest(system("Rewrite the selected code as asked")), "inline_edit");
+  assert.equal(classifyRequest(system("You are a helpful assistant")), "chat");
+});
+
+test("classifyRequest falls back on the request's shape", () => {
+  const oneShot = { messages: [{ role: "user", content: "label this" }], max_tokens: 16 };
+  assert.equal(classifyRequest(oneShot), "naming");
+  assert.equal(classifyRequest({ ...oneShot, max_tokens: 1024 }), "chat");
+  assert.equal(classifyRequest({}), "chat");
+  const parts = { messages: [{ role: "user", content: [{ type: "text", text: "Generate a git commit message" }] }] };
+  assert.equal(classifyRequest(parts), "commits");
+});
@@ -0,0 +1,193 @@
+const test = require("node:test");
+const assert = require("node:assert/strict");
+const {
+  RateLimiters,
+  estimateTokens,
+  parseResetMs,
+  parseRateLimitHeaders,
+} = require("../../main/resources/proxy/lib/rate-limit");
+
+const KEY = "openai#0123abcd";
+
+function limits({ limit = 100, remaining = 100, reset = "60s" } = {}) {
+  return {
+    "x-ratelimit-limit-requests": String(limit),
+    "x-ratelimit-remaining-requests": String(remaining),
+    "x-ratelimit-reset-requests": reset,
+  };
+}
+
+function respond(headers = {}, status = 200) {
+  return async () => ({ status, headers });
+}
+
+test("parseResetMs reads seconds, Go-style durations and timestamps", () => {
+  assert.equal(parseResetMs("20"), 20000);
+  assert.equal(parseResetMs("0.5"), 500);
+  assert.equal(parseResetMs("1.5s"), 1500);
+  assert.equal(parseResetMs("20ms"), 20);
+  assert.equal(parseResetMs("6m0s"), 360000);
+  assert.equal(parseResetMs("1h2m3s"), 3723000);
+  assert.equal(parseResetMs(7), 7000);
+
+  const ms = parseResetMs(new Date(Date.now() + 30000).toISOString());
+  assert.ok(ms > 28000 && ms <= 30000, `got ${ms}`);
+  assert.equal(parseResetMs(new Date(Date.now() - 30000).toISOString()), 0);
+});
+
+test("parseResetMs rejects what it can't read", () => {
+  assert.equal(parseResetMs(undefined), null);
+  assert.equal(parseResetMs(null), null);
+  assert.equal(parseResetMs(""), null);
+  assert.equal(parseResetMs("soon"), null);
+  assert.equal(parseResetMs("5x"), null);
+  assert.equal(parseResetMs("1s and change"), null);
+});
+
+test("parseRateLimitHeaders reads OpenAI-style headers", () => {
+  const parsed = parseRateLimitHeaders({
+    ...limits({ limit: 500, remaining: 499, reset: "120ms" }),
+    "x-ratelimit-limit-tokens": "30000",
+    "x-ratelimit-remaining-tokens": "29000",
+    "x-ratelimit-reset-tokens": "2s",
+  });
+  assert.deepEqual(parsed, {
+    requests: { limit: 500, remaining: 499, resetMs: 120 },
+    tokens: { limit: 30000, remaining: 29000, resetMs: 2000 },
+  });
+});
+
+test("parseRateLimitHeaders reads Anthropic headers and Headers objects", () => {
+  const reset = new Date(Date.now() + 10000).toISOString();
+  const headers = new Headers({
+    "anthropic-ratelimit-tokens-limit": "80000",
+    "anthropic-ratelimit-tokens-remaining": "79000",
+    "anthropic-ratelimit-tokens-reset": reset,
+  });
+  const parsed = parseRateLimitHeaders(headers);
+  assert.deepEqual(Object.keys(parsed), ["tokens"]);
+  assert.equal(parsed.tokens.limit, 80000);
+  assert.equal(parsed.tokens.remaining, 79000);
+  assert.ok(parsed.tokens.resetMs > 8000 && parsed.tokens.resetMs <= 10000);
+});
+
+test("parseRateLimitHeaders leaves out incomplete or missing limits", () => {
+  assert.deepEqual(parseRateLimitHeaders(undefined), {});
+  assert.deepEqual(parseRateLimitHeaders({}), {});
+  assert.deepEqual(parseRateLimitHeaders({ "x-ratelimit-limit-requests": "60" }), {});
+  assert.deepEqual(
+    parseRateLimitHeaders({ "x-ratelimit-limit-requests": "0", "x-ratelimit-remaining-requests": "0" }),
+    {},
+  );
+});
+
+test("nothing is paced until the provider has reported its limits", async () => {
+  const limiters = new RateLimiters();
+  for (let i = 0; i < 5; i++) {
+    await limiters.run(KEY, respond(), { tokens: 1000 });
+  }
+  assert.deepEqual(limiters.snapshot()[KEY], { paced: 0, paced_ms: 0, rejected: 0, throttled: 0 });
+});
+
+test("a response resets the bucket to what the provider reports", async () => {
+  const limiters = new RateLimiters();
+  await limiters.run(KEY, respond(limits({ limit: 100, remaining: 40 })));
+  const bucket = limiters.snapshot()[KEY].requests;
+  assert.equal(bucket.limit, 100);
+  assert.equal(bucket.remaining, 40);
+  assert.equal(bucket.outstanding, 0);
+  // 60 to refill within the 60s window
+  assert.equal(bucket.refill_per_s, 1);
+});
+
+test("calls in flight are held against the reported remaining budget", async () => {
+  const limiters = new RateLimiters();
+  await limiters.run(KEY, respond(limits({ remaining: 100 })));
+
+  let release;
+  const held = limiters.run(KEY, () => new Promise((resolve) => (release = resolve)));
+  await limiters.run(KEY, respond(limits({ remaining: 50 })));
+  let bucket = limiters.snapshot()[KEY].requests;
+  assert.equal(bucket.outstanding, 1);
+  assert.equal(bucket.remaining, 49);
+
+  release({ status: 200, headers: {} });
+  await held;
+  bucket = limiters.snapshot()[KEY].requests;
+  assert.equal(bucket.outstanding, 0);
+});
+
+test("a short deficit is paced, then the call goes out", async () => {
+  const limiters = new RateLimiters();
+  // Empty, refilling 60 per second
+  await limiters.run(KEY, respond(limits({ limit: 60, remaining: 0, reset: "1s" })));
+
+  const started = Date.now();
+  const response = await limiters.run(KEY, respond({}, 200));
+  assert.equal(response.status, 200);
+  assert.ok(Date.now() - started >= 20);
+  const entry = limiters.snapshot()[KEY];
+  assert.equal(entry.paced, 1);
+  assert.ok(entry.paced_ms > 0);
+});
+
+test("a deficit beyond the pacing cap fails with ERATELIMITED and refunds", async () => {
+  const limiters = new RateLimiters();
+  // Empty, refilling 10 per 6 minutes
+  await limiters.run(KEY, respond(limits({ limit: 10, remaining: 0, reset: "6m0s" })));
+  const before = limiters.snapshot()[KEY].requests.remaining;
+
+  let called = false;
+  await assert.rejects(
+    limiters.run(KEY, async () => {
+      called = true;
+      return { status: 200, headers: {} };
+    }),
+    (error) => error.code === "ERATELIMITED" && error.retryAfterMs > 20000,
+  );
+  assert.equal(called, false);
+  const entry = limiters.snapshot()[KEY];
+  assert.equal(entry.rejected, 1);
+  assert.equal(entry.requests.remaining, before);
+  assert.equal(entry.requests.outstanding, 0);
+});
+
+test("a call cancelled while paced gives its reservation back", async () => {
+  const limiters = new RateLimiters();
+  // Empty, refilling 60 per minute: the next call waits about a second
+  await limiters.run(KEY, respond(limits({ limit: 60, remaining: 0, reset: "60s" })));
+
+  const controller = new AbortController();
+  const pending = limiters.run(KEY, respond(), { signal: controller.signal });
+  controller.abort(new Error("client gone"));
+  await assert.rejects(pending, /client gone/);
+  const bucket = limiters.snapshot()[KEY].requests;
+  assert.equal(bucket.outstanding, 0);
+  assert.equal(bucket.remaining, 0);
+});
+
+test("a failed call settles its reservation but keeps it spent", async () => {
+  const limiters = new RateLimiters();
+  await limiters.run(KEY, respond(limits({ limit: 100, remaining: 100, reset: "1h0m0s" })));
+  await assert.rejects(
+    limiters.run(KEY, async () => {
+      throw new Error("ECONNRESET");
+    }),
+  );
+  const bucket = limiters.snapshot()[KEY].requests;
+  assert.equal(bucket.outstanding, 0);
+  assert.equal(bucket.remaining, 99);
+});
+
+test("429 answers are counted as throttled", async () => {
+  const limiters = new RateLimiters();
+  await limiters.run(KEY, respond(limits(), 429));
+  assert.equal(limiters.snapshot()[KEY].throttled, 1);
+});
+
+test("estimateTokens counts the prompt and the completion budget", () => {
+  const body = { messages: [{ role: "user", content: "x".repeat(400) }], max_tokens: 256 };
+  const promptChars = JSON.stringify(body.messages).length;
+  assert.equal(estimateTokens(body), Math.ceil(promptChars / 4) + 256);
+  assert.equal(estimateTokens({}), 1);
+});
@@ -0,0 +1,137 @@
+const test = require("node:test");
+const assert = require("node:assert/strict");
+const { ResponseCache } = require("../../main/resources/proxy/lib/response-cache");
+
+// SSE answer of exactly `size` bytes
+function sseOf(size, fill = "x") {
+  const frame = (text) => `data: {"choices":[{"delta":{"content":"${text}"}}]}\n\n`;
+  return frame(fill.repeat(size - frame("").length));
+}
+
+const sleep = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+
+test("keys ignore transport parameters and key order", () => {
+  const cache = new ResponseCache();
+  const body = { model: "m", temperature: 0, messages: [{ role: "user", content: "hi" }] };
+  const key = cache.key(body);
+  assert.equal(cache.key({ messages: body.messages, temperature: 0, model: "m" }), key);
+  assert.equal(cache.key({ ...body, stream: true, stream_options: { include_usage: true } }), key);
+  assert.notEqual(cache.key({ ...body, temperature: 0.1 }), key);
+  assert.notEqual(cache.key({ ...body, messages: [{ role: "user", content: "hi!" }] }), key);
+});
+
+test("least recently used entries are evicted past the byte budget", () => {
+  const cache = new ResponseCache({ maxBytes: 400 });
+  cache.set("a", { sse: sseOf(100) });
+  cache.set("b", { sse: sseOf(100) });
+  cache.set("c", { sse: sseOf(100) });
+  cache.set("d", { sse: sseOf(100) });
+  assert.equal(cache.bytes, 400);
+
+  // Reading "a" makes "b" the oldest
+  assert.ok(cache.get("a", { stream: true }));
+  cache.set("e", { sse: sseOf(100) });
+  assert.equal(cache.get("b", { stream: true }), null);
+  for (const key of ["a", "c", "d", "e"]) {
+    assert.ok(cache.get(key, { stream: true }), key);
+  }
+  assert.equal(cache.bytes, 400);
+  assert.equal(cache.snapshot().evictions, 1);
+});
+
+test("replacing an entry doesn't count its old size twice", () => {
+  const cache = new ResponseCache({ maxBytes: 400 });
+  cache.set("a", { sse: sseOf(100) });
+  cache.set("a", { sse: sseOf(80) });
+  assert.equal(cache.bytes, 80);
+  assert.equal(cache.entries.size, 1);
+});
+
+test("entries over a quarter of the budget are not kept", () => {
+  const cache = new ResponseCache({ maxBytes: 400 });
+  cache.set("a", { sse: sseOf(101) });
+  assert.equal(cache.entries.size, 0);
+  assert.equal(cache.maxEntryBytes, 100);
+});
+
+test("a zero budget disables the memory tier", () => {
+  const cache = new ResponseCache({ maxBytes: 0 });
+  assert.equal(cache.enabled, false);
+  cache.set("a", { sse: sseOf(60) });
+  assert.equal(cache.get("a", { stream: true }), null);
+});
+
+test("entries expire after the TTL", async () => {
+  const cache = new ResponseCache({ ttlMs: 30 });
+  cache.set("a", { sse: sseOf(50) });
+  assert.ok(cache.get("a", { stream: true }));
+  await sleep(50);
+  assert.equal(cache.get("a", { stream: true }), null);
+  const stats = cache.snapshot();
+  assert.equal(stats.expired, 1);
+  assert.equal(stats.entries, 0);
+  assert.equal(stats.bytes, 0);
+});
+
+test("an explicit expiry (from the disk tier) is kept", () => {
+  const cache = new ResponseCache({ ttlMs: 3600000 });
+  cache.set("a", { sse: sseOf(50) }, Date.now() - 1);
+  assert.equal(cache.get("a", { stream: true }), null);
+});
+
+test("a streamed answer serves a plain request and the other way round", () => {
+  const cache = new ResponseCache();
+  const sse =
+    'data: {"id":"c1","created":1,"model":"m","choices":[{"delta":{"content":"Hel"}}]}\n\n' +
+    'data: {"id":"c1","created":1,"model":"m","choices":[{"delta":{"content":"lo"},"finish_reason":"stop"}]}\n\n' +
+    "data: [DONE]\n\n";
+  cache.set("streamed", { sse });
+  assert.equal(cache.get("streamed", { stream: true }), sse);
+  const completion = cache.get("streamed", { stream: false });
+  assert.equal(completion.object, "chat.completion");
+  assert.equal(completion.choices[0].message.content, "Hello");
+  assert.equal(completion.choices[0].finish_reason, "stop");
+
+  cache.set("plain", {
+    completion: {
+      id: "c2",
+      model: "m",
+      choices: [{ message: { role: "assistant", content: "Hi" }, finish_reason: "stop" }],
+      usage: { total_tokens: 3 },
+    },
+  });
+  const replay = cache.get("plain", { stream: true });
+  assert.match(replay, /"content":"Hi"/);
+  assert.match(replay, /"usage":\{"total_tokens":3\}/);
+  assert.ok(replay.endsWith("data: [DONE]\n\n"));
+});
+
+test("hits and misses are counted", () => {
+  const cache = new ResponseCache();
+  cache.set("a", { sse: sseOf(50) });
+  cache.get("a", { stream: true });
+  cache.get("b", { stream: true });
+  cache.get("c", { stream: false });
+  const stats = cache.snapshot();
+  assert.equal(stats.hits, 1);
+  assert.equal(stats.misses, 2);
+  assert.equal(stats.hit_rate, 0.333);
+});
+
+test("lookup promotes disk hits into memory", async () => {
+  const stored = { kind: "json", text: JSON.stringify({ choices: [{ message: { content: "disk" } }] }) };
+  const disk = {
+    enabled: true,
+    maxBytes: 1024,
+    reads: 0,
+    async get() {
+      this.reads += 1;
+      return { ...stored, expiresAt: Date.now() + 60000 };
+    },
+  };
+  const cache = new ResponseCache({ disk });
+  const answer = await cache.lookup("k", { stream: false, model: "m" });
+  assert.equal(answer.choices[0].message.content, "disk");
+  await cache.lookup("k", { stream: false, model: "m" });
+  assert.equal(disk.reads, 1);
+});
@@ -0,0 +1,153 @@
+const test = require("node:test");
+const assert = require("node:assert/strict");
+const { withRetries, parseRetryAfter } = require("../../main/resources/proxy/lib/retry");
+
+function networkError(code) {
+  const error = new Error(code);
+  error.code = code;
+  return error;
+}
+
+// Answers from a script, one per attempt
+function scripted(...outcomes) {
+  const attempt = async () => {
+    attempt.calls += 1;
+    const outcome = outcomes.shift();
+    if (outcome instanceof Error) {
+      throw outcome;
+    }
+    return outcome;
+  };
+  attempt.calls = 0;
+  return attempt;
+}
+
+test("parseRetryAfter reads delta-seconds and HTTP dates", () => {
+  assert.equal(parseRetryAfter("2"), 2000);
+  assert.equal(parseRetryAfter("0.5"), 500);
+  assert.equal(parseRetryAfter("-3"), 0);
+  assert.equal(parseRetryAfter(undefined), null);
+  assert.equal(parseRetryAfter(""), null);
+  assert.equal(parseRetryAfter("soon"), null);
+
+  const inTenSeconds = new Date(Date.now() + 10000).toUTCString();
+  const ms = parseRetryAfter(inTenSeconds);
+  assert.ok(ms > 8000 && ms <= 10000, `got ${ms}`);
+  assert.equal(parseRetryAfter(new Date(Date.now() - 10000).toUTCString()), 0);
+});
+
+test("retryable statuses are retried until one succeeds", async () => {
+  const attempt = scripted(
+    { status: 503, headers: { "retry-after": "0" } },
+    { status: 429, headers: { "retry-after": "0" } },
+    { status: 200, data: "ok" },
+  );
+  const retries = [];
+  const response = await withRetries(attempt, {
+    maxRetries: 3,
+    onRetry: (info) => retries.push(info),
+  });
+  assert.equal(response.status, 200);
+  assert.equal(attempt.calls, 3);
+  assert.deepEqual(
+    retries.map(({ attempt: n, status }) => [n, status]),
+    [
+      [1, 503],
+      [2, 429],
+    ],
+  );
+});
+
+test("other statuses are returned as they are", async () => {
+  for (const status of [400, 401, 404, 500]) {
+    const attempt = scripted({ status }, { status: 200 });
+    const response = await withRetries(attempt, { maxRetries: 3 });
+    assert.equal(response.status, status);
+    assert.equal(attempt.calls, 1);
+  }
+});
+
+test("the last retryable response is returned once the budget is spent", async () => {
+  const attempt = scripted(
+    { status: 502, headers: { "retry-after": "0" } },
+    { status: 504, headers: { "retry-after": "0" } },
+  );
+  const response = await withRetries(attempt, { maxRetries: 1 });
+  assert.equal(response.status, 504);
+  assert.equal(attempt.calls, 2);
+});
+
+test("a Retry-After beyond the cap gives up instead of waiting", async () => {
+  const attempt = scripted({ status: 429, headers: { "retry-after": "120" } }, { status: 200 });
+  const response = await withRetries(attempt, { maxRetries: 3 });
+  assert.equal(response.status, 429);
+  assert.equal(attempt.calls, 1);
+});
+
+test("a discarded streamed body is destroyed before retrying", async () => {
+  let destroyed = false;
+  const attempt = scripted(
+    { status: 503, headers: { "retry-after": "0" }, data: { destroy: () => (destroyed = true) } },
+    { status: 200 },
+  );
+  await withRetries(attempt, { maxRetries: 1 });
+  assert.ok(destroyed);
+});
+
+test("connection errors are retried with jittered backoff", async (t) => {
+  t.mock.method(Math, "random", () => 0);
+  const attempt = scripted(networkError("ECONNRESET"), networkError("ETIMEDOUT"), { status: 200 });
+  const retries = [];
+  const response = await withRetries(attempt, {
+    maxRetries: 2,
+    onRetry: (info) => retries.push(info),
+  });
+  assert.equal(response.status, 200);
+  assert.deepEqual(
+    retries.map(({ code, delay }) => [code, delay]),
+    [
+      ["ECONNRESET", 0],
+      ["ETIMEDOUT", 0],
+    ],
+  );
+});
+
+// Mock timers need Node 20.4+; the proxy itself supports 18
+const mockTimers = "timers" in test.mock;
+
+test("backoff grows exponentially up to the cap", { skip: !mockTimers }, async (t) => {
+  t.mock.method(Math, "random", () => 0.999999);
+  t.mock.timers.enable({ apis: ["setTimeout"] });
+  const errors = Array.from({ length: 6 }, () => networkError("ECONNREFUSED"));
+  const attempt = scripted(...errors, { status: 200 });
+  const delays = [];
+  const done = withRetries(attempt, {
+    maxRetries: 6,
+    onRetry: ({ delay }) => {
+      delays.push(delay);
+      setImmediate(() => t.mock.timers.tick(delay));
+    },
+  });
+  assert.equal((await done).status, 200);
+  assert.deepEqual(delays, [500, 1000, 2000, 4000, 8000, 8000]);
+});
+
+test("our own timeout and unknown errors are not retried", async () => {
+  for (const code of ["ECONNABORTED", "ERR_BAD_REQUEST", undefined]) {
+    const attempt = scripted(networkError(code), { status: 200 });
+    await assert.rejects(withRetries(attempt, { maxRetries: 3 }));
+    assert.equal(attempt.calls, 1);
+  }
+});
+
+test("aborting while waiting rejects with the abort reason", async () => {
+  const controller = new AbortController();
+  const attempt = scripted({ status: 503, headers: { "retry-after": "5" } }, { status: 200 });
+  const done = withRetries(attempt, {
+    maxRetries: 1,
+    signal: controller.signal,
+    onRetry: () => setImmediate(() => controller.abort(new Error("client gone"))),
+  });
+  await assert.rejects(done, /client gone/);
+  assert.equal(attempt.calls, 1);
+});